@@ -4,31 +4,21 @@
  * SPDX-License-Identifier: Apache-2.0
  */
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import org.hyperledger.fabric.client.Contract;
-import org.hyperledger.fabric.client.Gateway;
 import org.hyperledger.fabric.client.GatewayException;
-import org.hyperledger.fabric.client.identity.Identities;
-import org.hyperledger.fabric.client.identity.Signers;
-import org.hyperledger.fabric.client.identity.X509Identity;
-
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonParser;
-
-import io.grpc.ChannelCredentials;
-import io.grpc.Grpc;
-import io.grpc.ManagedChannel;
-import io.grpc.TlsChannelCredentials;
+import org.hyperledger.fabric.client.Network;
 
 
 public final class App {
@@ -36,95 +26,97 @@ public final class App {
     // path to your test-network directory included, e.g.: Paths.get("..", "..", "test-network")
     private static final Path PATH_TO_TEST_NETWORK = Paths.get("..", "..", "test-network");
 
-    private static final String CHANNEL_NAME = System.getenv().getOrDefault("CHANNEL_NAME", "mychannel");
-    private static final String CHAINCODE_NAME = System.getenv().getOrDefault("CHAINCODE_NAME", "basic");
+    static final String CHANNEL_NAME = System.getenv().getOrDefault("CHANNEL_NAME", "mychannel");
+    static final String CHAINCODE_NAME = System.getenv().getOrDefault("CHAINCODE_NAME", "basic");
 
     // Gateway peer end point.
     private static final String PEER_ENDPOINT = "localhost:7051";
     private static final String OVERRIDE_AUTH = "peer0.org1.example.com";
 
-    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    // Comma-separated host:port/tls-host-name of the gateway peers used by each organization.
+    private static final String PEER_ENDPOINTS_ORG1 =
+            System.getenv().getOrDefault("PEER_ENDPOINTS_ORG1", PEER_ENDPOINT + "/" + OVERRIDE_AUTH);
+    private static final String PEER_ENDPOINTS_ORG2 =
+            System.getenv().getOrDefault("PEER_ENDPOINTS_ORG2", PEER_ENDPOINT + "/" + OVERRIDE_AUTH);
 
-    public static void main(final String[] args) throws Exception {
+    // Number of plants fetched per GetBasilByOwnerWithPagination call.
+    private static final int PAGE_SIZE = Integer.parseInt(System.getenv().getOrDefault("PAGE_SIZE", "100"));
 
-        ChannelCredentials credentials = TlsChannelCredentials.newBuilder()
-                .trustManager(PATH_TO_TEST_NETWORK.resolve(Paths.get(
-                                "organizations/peerOrganizations/org1.example.com/" +
-                                        "peers/peer0.org1.example.com/tls/ca.crt"))
-                        .toFile())
-                .build();
-        // The gRPC client connection should be shared by all Gateway connections to
-        // this endpoint.
-        ManagedChannel channel = Grpc.newChannelBuilder(PEER_ENDPOINT, credentials)
-                .overrideAuthority(OVERRIDE_AUTH)
-                .build();
-
-        Gateway.Builder builderOrg1 = Gateway.newInstance()
-                .identity(new X509Identity("Org1MSP",
-                        Identities.readX509Certificate(
-                                Files.newBufferedReader(
-                                        PATH_TO_TEST_NETWORK.resolve(Paths.get(
-                                                "organizations/peerOrganizations/org1.example.com/" +
-                                                        "users/User1@org1.example.com/msp/signcerts/cert.pem"
-                                        ))
-                                )
-                        )
-                ))
-                .signer(
-                        Signers.newPrivateKeySigner(
-                                Identities.readPrivateKey(
-                                        Files.newBufferedReader(
-                                                Files.list(PATH_TO_TEST_NETWORK.resolve(
-                                                                Paths.get(
-                                                                        "organizations/peerOrganizations/org1.example.com/" +
-                                                                                "users/User1@org1.example.com/msp/keystore")
-                                                        )
-                                                ).findFirst().orElseThrow()
-                                        )
-                                )
-                        )
-                )
-                .connection(channel)
-                // Default timeouts for different gRPC calls
-                .evaluateOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-                .endorseOptions(options -> options.withDeadlineAfter(15, TimeUnit.SECONDS))
-                .submitOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-                .commitStatusOptions(options -> options.withDeadlineAfter(1, TimeUnit.MINUTES));
-
-        // notice that we can share the grpc connection since we don't use private date,
-        // otherwise we should create another connection
-        Gateway.Builder builderOrg2 = Gateway.newInstance()
-                .identity(new X509Identity("Org2MSP",
-                        Identities.readX509Certificate(Files.newBufferedReader(PATH_TO_TEST_NETWORK.resolve(Paths.get(
-                                "organizations/peerOrganizations/org2.example.com/users/User1@org2.example.com/msp/signcerts/cert.pem"))))))
-                .signer(Signers.newPrivateKeySigner(Identities.readPrivateKey(Files.newBufferedReader(Files
-                        .list(PATH_TO_TEST_NETWORK.resolve(Paths
-                                .get("organizations/peerOrganizations/org2.example.com/users/User1@org2.example.com/msp/keystore")))
-                        .findFirst().orElseThrow()))))
-                .connection(channel)
-                .evaluateOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-                .endorseOptions(options -> options.withDeadlineAfter(15, TimeUnit.SECONDS))
-                .submitOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-                .commitStatusOptions(options -> options.withDeadlineAfter(1, TimeUnit.MINUTES));
+    // Number of plants sent per CreatePlants / UpdatePlants transaction.
+    private static final int BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("BATCH_SIZE", "100"));
+
+    // Transactions kept in flight by the bulk loader; 0 submits each batch synchronously.
+    private static final int PIPELINE_WINDOW = Integer.parseInt(System.getenv().getOrDefault("PIPELINE_WINDOW", "0"));
+
+    // Deadline of each attempt of a read-only call; a failed read is retried on the other organization's peer.
+    private static final long EVALUATE_TIMEOUT_MS =
+            Long.parseLong(System.getenv().getOrDefault("EVALUATE_TIMEOUT_MS", "2000"));
+
+    // Directory of the local read model fed by chaincode events; empty disables it.
+    private static final String READ_MODEL_DIR = System.getenv().getOrDefault("READ_MODEL_DIR", "");
+
+    // Events applied to the read model between two snapshots and checkpoints.
+    private static final int READ_MODEL_SNAPSHOT_EVERY =
+            Integer.parseInt(System.getenv().getOrDefault("READ_MODEL_SNAPSHOT_EVERY", "1000"));
+
+    // Plants kept in the client-side lookup cache; 0 disables it.
+    private static final int CACHE_SIZE = Integer.parseInt(System.getenv().getOrDefault("CACHE_SIZE", "1000"));
+
+    // Time after which a cached plant is read again even without a change event.
+    private static final long CACHE_TTL_MS = Long.parseLong(System.getenv().getOrDefault("CACHE_TTL_MS", "30000"));
+
+    // Attempts of a write that fails with an MVCC conflict, and the backoff between them.
+    private static final int SUBMIT_MAX_ATTEMPTS =
+            Integer.parseInt(System.getenv().getOrDefault("SUBMIT_MAX_ATTEMPTS", "5"));
+    private static final long SUBMIT_BACKOFF_MS =
+            Long.parseLong(System.getenv().getOrDefault("SUBMIT_BACKOFF_MS", "100"));
+    private static final long SUBMIT_MAX_BACKOFF_MS =
+            Long.parseLong(System.getenv().getOrDefault("SUBMIT_MAX_BACKOFF_MS", "2000"));
+
+    // Plants per ExportPlants call, ranges exported at once and the keys the ranges are cut at.
+    private static final int EXPORT_PAGE_SIZE = Integer.parseInt(System.getenv().getOrDefault("EXPORT_PAGE_SIZE", "500"));
+    private static final int EXPORT_PARALLELISM =
+            Integer.parseInt(System.getenv().getOrDefault("EXPORT_PARALLELISM", "4"));
+    private static final String EXPORT_SPLIT_KEYS =
+            System.getenv().getOrDefault("EXPORT_SPLIT_KEYS", "0,5,A,H,O,V,a,h,o,v");
 
+    // Locks serializing the writes of this client per plant.
+    private static final int KEY_LOCK_STRIPES = Integer.parseInt(System.getenv().getOrDefault("KEY_LOCK_STRIPES", "256"));
+
+    // File the endorse, submit and commit latencies are written to, and how often; empty disables it.
+    private static final String CLIENT_TIMINGS_FILE = System.getenv().getOrDefault("CLIENT_TIMINGS_FILE", "");
+    private static final long CLIENT_TIMINGS_INTERVAL_S =
+            Long.parseLong(System.getenv().getOrDefault("CLIENT_TIMINGS_INTERVAL_S", "10"));
+
+    public static void main(final String[] args) throws Exception {
+
+        GatewayPool.Builder poolBuilder = newGatewayPoolBuilder();
         Scanner scanner = new Scanner(System.in);
-        Gson gson = new Gson();
 
-        try (Gateway gatewayOrg1 = builderOrg1.connect();
-             Gateway gatewayOrg2 = builderOrg2.connect()) {
+        BasilLegCache cache = CACHE_SIZE > 0 ? new BasilLegCache(CACHE_SIZE, CACHE_TTL_MS, TimeUnit.MILLISECONDS) : null;
+        ConflictRetrySubmitter submitter = new ConflictRetrySubmitter(KEY_LOCK_STRIPES, SUBMIT_MAX_ATTEMPTS,
+                SUBMIT_BACKOFF_MS, SUBMIT_MAX_BACKOFF_MS);
 
-            Contract contractOrg1 = gatewayOrg1
-                    .getNetwork(CHANNEL_NAME)
-                    .getContract(CHAINCODE_NAME);
+        try (GatewayPool pool = poolBuilder.build();
+             PhaseTimer timer = newPhaseTimer();
+             BasilEventProjection projection = startReadModel(pool.getNetwork("Org1MSP", CHANNEL_NAME));
+             BasilLegCache.Subscription invalidation = cache == null ? null
+                     : cache.subscribe(pool.getNetwork("Org1MSP", CHANNEL_NAME), CHAINCODE_NAME)) {
 
-            Contract contractOrg2 = gatewayOrg2
-                    .getNetwork(CHANNEL_NAME)
-                    .getContract(CHAINCODE_NAME);
+            // pooled contracts are thread-safe and spread the calls over the endpoints
+            Contract contractOrg1 = timer.wrap(pool.getContract("Org1MSP", CHANNEL_NAME, CHAINCODE_NAME), "Org1MSP");
+            Contract contractOrg2 = timer.wrap(pool.getContract("Org2MSP", CHANNEL_NAME, CHAINCODE_NAME), "Org2MSP");
 
             Map<String, Contract> ORGS = new HashMap<>();
             ORGS.put("Org1MSP", contractOrg1);
             ORGS.put("Org2MSP", contractOrg2);
 
+            // reads are evaluated, never submitted, and fall back on the other organization;
+            // writes of both organizations share the submitter, so they are serialized per plant
+            Map<String, BasilClient> CLIENTS = new HashMap<>();
+            CLIENTS.put("Org1MSP", newClient(contractOrg1, cache, "Org2MSP").withRetry(submitter));
+            CLIENTS.put("Org2MSP", newClient(contractOrg2, cache, "Org1MSP").withRetry(submitter));
+
             while (true) {
                 try {
                     String orgName = getOrgIndex(ORGS.keySet().toArray(new String[0]), scanner);
@@ -140,6 +132,7 @@ public final class App {
 
                     String txName = TRANSACTIONS[txIndex];
                     Contract orgContract = ORGS.get(orgName);
+                    BasilClient orgClient = CLIENTS.get(orgName);
                     byte[] result;
 
                     if (orgName.equals("Org1MSP")) {
@@ -154,9 +147,10 @@ public final class App {
 
                                 if (QRCode != null && extraInfo != null && gpsPosition != null) {
                                     Basil basil = new Basil(QRCode, extraInfo, orgName);
-                                    BasilLeg basilLeg = new BasilLeg(System.currentTimeMillis(), gpsPosition, basil);
-                                    String BlSerialized = gson.toJson(basilLeg);
-                                    result = orgContract.submitTransaction(txName, BlSerialized);
+                                    BasilLeg basilLeg = new BasilLeg(System.currentTimeMillis(),
+                                            GpsPosition.parse(gpsPosition), basil);
+                                    String BlSerialized = BasilJson.toJson(basilLeg);
+                                    result = orgClient.invoke(txName, BlSerialized);
                                     System.out.println("result = " + prettyJson(result));
 
                                 } else {
@@ -174,9 +168,10 @@ public final class App {
 
                                 if (qr != null && extraInfoUpdt != null && gpsPositionUpdate != null) {
                                     Basil basil = new Basil(qr, extraInfoUpdt, orgName);
-                                    BasilLeg basilLeg = new BasilLeg(System.currentTimeMillis(), gpsPositionUpdate, basil);
-                                    String BlSerialized = gson.toJson(basilLeg);
-                                    result = orgContract.submitTransaction(txName, BlSerialized);
+                                    BasilLeg basilLeg = new BasilLeg(System.currentTimeMillis(),
+                                            GpsPosition.parse(gpsPositionUpdate), basil);
+                                    String BlSerialized = BasilJson.toJson(basilLeg);
+                                    result = orgClient.invoke(txName, BlSerialized);
                                     System.out.println("result = " + prettyJson(result));
                                 } else {
                                     throw new Exception("Missing parameters!\n");
@@ -184,27 +179,68 @@ public final class App {
 
                                 break;
 
+                            case "RecordPosition":
+                                System.out.print("What Plant has moved? : ");
+                                String movedQr = scanner.next();
+                                System.out.print("Insert GPS Position: ");
+                                String newGpsPosition = scanner.next();
+
+                                if (movedQr != null && newGpsPosition != null) {
+                                    orgClient.recordPosition(movedQr, GpsPosition.parse(newGpsPosition),
+                                            System.currentTimeMillis());
+                                    System.out.println("Position of " + movedQr + " recorded");
+                                } else {
+                                    throw new Exception("Missing parameters!\n");
+                                }
+                                break;
+
                             case "DeletePlant":
                                 System.out.print("What Plant you want to delete? : ");
                                 String deleteQr = scanner.next();
                                 System.out.println("I'm about to delete: " + deleteQr);
 
                                 if (deleteQr != null) {
-                                    orgContract.submitTransaction(txName, deleteQr);
-                                    getBasilByOwner(orgContract, orgName);
+                                    orgClient.invoke(txName, deleteQr);
+                                    getBasilByOwner(orgClient, orgName);
                                 } else {
                                     throw new Exception("Missing QRCode!");
                                 }
                                 break;
 
+                            case "ExportPlants":
+                                System.out.print("Insert the file to export to: ");
+                                Path exportFile = Paths.get(scanner.next());
+                                new BasilExporter(orgClient, EXPORT_PAGE_SIZE, EXPORT_PARALLELISM,
+                                        BasilExporter.splitKeys(EXPORT_SPLIT_KEYS)).export(exportFile);
+                                break;
+
+                            case "PlantsPerOrg":
+                                for (String owner : ORGS.keySet()) {
+                                    OwnerStats ownerStats = orgClient.getOwnerStats(owner);
+                                    System.out.printf("%s: %d plants, last change %s%n", owner,
+                                            ownerStats.getPlantCount(), Instant.ofEpochMilli(ownerStats.getLastUpdate()));
+                                }
+                                break;
+
+                            case "PlantsInBoundingBox":
+                                System.out.print("Insert the south-west corner (latitude,longitude): ");
+                                GpsPosition southWest = GpsPosition.parse(scanner.next());
+                                System.out.print("Insert the north-east corner (latitude,longitude): ");
+                                GpsPosition northEast = GpsPosition.parse(scanner.next());
+                                getPlantsInBoundingBox(orgClient, southWest, northEast);
+                                break;
+
                             case "GetTheStateOfPlant":
                                 System.out.print("Insert target plant's QRCode: ");
                                 String targetQr = scanner.next();
 
                                 if (targetQr != null) {
                                     System.out.println("Current State of " + targetQr);
-                                    result = orgContract.submitTransaction(txName, targetQr);
-                                    System.out.println("result = " + prettyJson(result));
+                                    BasilLeg basilLeg = orgClient.getTheStateOfPlant(targetQr);
+                                    System.out.println("result = " + BasilJson.toJson(basilLeg));
+                                    if (cache != null) {
+                                        System.out.println(cache);
+                                    }
                                 } else {
                                     throw new Exception("Missing QRCode!");
                                 }
@@ -216,13 +252,63 @@ public final class App {
 
                                 if (historyQr != null) {
                                     System.out.printf("Retrieving History of %s", historyQr);
-                                    result = orgContract.submitTransaction(txName, historyQr);
+                                    result = orgClient.invoke(txName, historyQr);
                                     System.out.println("result = " + prettyJson(result));
                                 } else {
                                     throw new Exception("Missing QRCode!");
                                 }
                                 break;
 
+                            case "CreatePlants":
+                            case "UpdatePlants":
+                                System.out.print("Insert the path of the CSV or JSON file: ");
+                                String bulkFile = scanner.next();
+
+                                if (bulkFile != null && PIPELINE_WINDOW > 0) {
+                                    try (PipelinedSubmitter pipeline = new PipelinedSubmitter(PIPELINE_WINDOW)) {
+                                        new BasilBulkLoader(orgContract, orgName, BATCH_SIZE, pipeline)
+                                                .load(Paths.get(bulkFile), txName);
+                                    }
+                                } else if (bulkFile != null) {
+                                    new BasilBulkLoader(orgContract, orgName, BATCH_SIZE).load(Paths.get(bulkFile), txName);
+                                } else {
+                                    throw new Exception("Missing file!");
+                                }
+                                break;
+
+                            case "LocalStateOfPlant":
+                                System.out.print("Insert target plant's QRCode: ");
+                                String localQr = scanner.next();
+
+                                BasilLeg localBasilLeg = getReadModel(projection).get(localQr);
+                                if (localBasilLeg != null) {
+                                    System.out.println("result = " + BasilJson.toJson(localBasilLeg));
+                                } else {
+                                    System.out.println("Basil " + localQr + " not found in the read model");
+                                }
+                                break;
+
+                            case "LocalPlantsByOwner":
+                                System.out.print("Insert the owner: ");
+                                String localOwner = getOrgIndex(ORGS.keySet().toArray(new String[0]), scanner);
+
+                                if (localOwner != null) {
+                                    for (BasilLeg basilLeg : getReadModel(projection).getByOwner(localOwner)) {
+                                        System.out.println(BasilJson.toJson(basilLeg));
+                                    }
+                                } else {
+                                    throw new Exception("Missing owner!");
+                                }
+                                break;
+
+                            case "GatewayStats":
+                                for (GatewayPool.Endpoint endpoint : pool.getEndpoints()) {
+                                    System.out.println(endpoint);
+                                }
+                                System.out.println(submitter);
+                                System.out.print(timer);
+                                break;
+
                             case "TransferOwnership":
                                 System.out.print("Insert the plant qr: ");
                                 String transferPlantQR = scanner.next();
@@ -230,12 +316,26 @@ public final class App {
                                 String newOwner = getOrgIndex(ORGS.keySet().toArray(new String[0]), scanner);
 
                                 if (transferPlantQR != null && newOwner != null) {
-                                    result = orgContract.submitTransaction(txName, transferPlantQR, newOwner);
+                                    result = orgClient.invoke(txName, transferPlantQR, newOwner);
                                     System.out.println("result = " + prettyJson(result));
                                 } else {
                                     throw new Exception("Missing Parameters!");
                                 }
                                 break;
+
+                            case "TransferOwnershipBatch":
+                                System.out.print("Insert the plant qrs, separated by commas: ");
+                                String transferPlantQRs = scanner.next();
+                                System.out.print("Insert the buyer (new owner): ");
+                                String batchOwner = getOrgIndex(ORGS.keySet().toArray(new String[0]), scanner);
+
+                                if (transferPlantQRs != null && batchOwner != null) {
+                                    System.out.println("result = " + orgClient.transferOwnershipBatch(
+                                            Arrays.asList(transferPlantQRs.split(",")), batchOwner));
+                                } else {
+                                    throw new Exception("Missing Parameters!");
+                                }
+                                break;
                         }
                     } else if (orgName.equals("Org2MSP")) {
                         switch (txName) {
@@ -245,7 +345,7 @@ public final class App {
 
                                 if (historyQr != null) {
                                     System.out.printf("Retrieving History of %s", historyQr);
-                                    result = orgContract.submitTransaction(txName, historyQr);
+                                    result = orgClient.invoke(txName, historyQr);
                                     System.out.println("result = " + prettyJson(result));
                                 } else {
                                     throw new Exception("Missing QRCode!");
@@ -258,8 +358,8 @@ public final class App {
                                 System.out.println("I'm about to delete: " + deleteQr);
 
                                 if (deleteQr != null) {
-                                    orgContract.submitTransaction(txName, deleteQr);
-                                    getBasilByOwner(orgContract, orgName);
+                                    orgClient.invoke(txName, deleteQr);
+                                    getBasilByOwner(orgClient, orgName);
                                 } else {
                                     throw new Exception("Missing QRCode!");
                                 }
@@ -273,8 +373,6 @@ public final class App {
                     System.out.println(e.getMessage());
                 }
             }
-        } finally {
-            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
         }
     }
 
@@ -284,7 +382,8 @@ public final class App {
 
         if (orgName.equals("Org1MSP")) {
             TRANSACTIONS = new String[]{"CreatePlant", "UpdatePlant", "DeletePlant", "GetTheStateOfPlant",
-                    "HistoryPlant", "TransferOwnership"};
+                    "HistoryPlant", "TransferOwnership", "TransferOwnershipBatch", "CreatePlants", "UpdatePlants", "RecordPosition", "PlantsInBoundingBox", "PlantsPerOrg", "ExportPlants", "LocalStateOfPlant",
+                    "LocalPlantsByOwner", "GatewayStats"};
         } else {
             TRANSACTIONS = new String[]{"HistoryPlant", "DeletePlant"};
         }
@@ -322,20 +421,141 @@ public final class App {
         return txIndex;
     }
 
-    private static void getBasilByOwner(Contract contract, String owner) throws GatewayException {
+    private static void getBasilByOwner(BasilClient client, String owner) throws GatewayException {
         System.out.printf("\n--> %s Remaining Plants <--\n", owner);
 
-        var result = contract.evaluateTransaction("GetBasilByOwner", owner);
+        // walk the owner's plants one page at a time so neither the peer nor this client
+        // has to hold the whole result set in memory
+        String bookmark = "";
+        int pageNumber = 0;
+        while (true) {
+            BasilLegPage page = client.getBasilByOwner(owner, PAGE_SIZE, bookmark);
 
-        System.out.println(prettyJson(result));
+            System.out.printf("page %d (%d plants)%n", ++pageNumber, page.getFetchedCount());
+            for (BasilLeg basilLeg : page.getRecords()) {
+                System.out.println(BasilJson.toJson(basilLeg));
+            }
+
+            if (page.isLast(PAGE_SIZE)) {
+                break;
+            }
+            bookmark = page.getBookmark();
+        }
     }
 
-    private static String prettyJson(final byte[] json) {
-        return prettyJson(new String(json, StandardCharsets.UTF_8));
+    private static void getPlantsInBoundingBox(BasilClient client, GpsPosition southWest, GpsPosition northEast)
+            throws GatewayException {
+        String bookmark = "";
+        int found = 0;
+        while (true) {
+            BasilLegPage page = client.getPlantsInBoundingBox(southWest.getLatitude(), southWest.getLongitude(),
+                    northEast.getLatitude(), northEast.getLongitude(), PAGE_SIZE, bookmark);
+
+            for (BasilLeg basilLeg : page.getRecords()) {
+                System.out.println(BasilJson.toJson(basilLeg));
+                found++;
+            }
+
+            if (page.isLast(PAGE_SIZE)) {
+                break;
+            }
+            bookmark = page.getBookmark();
+        }
+        System.out.printf("%d plants in the box%n", found);
+    }
+
+    /**
+     * Gateway connections of the two test-network organizations, to the peers listed in
+     * PEER_ENDPOINTS_ORG1 and PEER_ENDPOINTS_ORG2.
+     */
+    static GatewayPool.Builder newGatewayPoolBuilder() throws Exception {
+        GatewayPool.Builder poolBuilder = GatewayPool.newBuilder()
+                .organization("Org1MSP", userCertificate("org1.example.com"), userPrivateKey("org1.example.com"))
+                .organization("Org2MSP", userCertificate("org2.example.com"), userPrivateKey("org2.example.com"))
+                // Default timeouts for different gRPC calls
+                .gatewayOptions(builder -> builder
+                        .evaluateOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
+                        .endorseOptions(options -> options.withDeadlineAfter(15, TimeUnit.SECONDS))
+                        .submitOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
+                        .commitStatusOptions(options -> options.withDeadlineAfter(1, TimeUnit.MINUTES)));
+        // notice that both organizations can share the peers since we don't use private data
+        addEndpoints(poolBuilder, "Org1MSP", PEER_ENDPOINTS_ORG1);
+        addEndpoints(poolBuilder, "Org2MSP", PEER_ENDPOINTS_ORG2);
+        return poolBuilder;
     }
 
-    private static String prettyJson(final String json) {
-        var parsedJson = JsonParser.parseString(json);
-        return gson.toJson(parsedJson);
+    /**
+     * Timer of the gateway calls, exporting to CLIENT_TIMINGS_FILE if set. The deadlines its
+     * latencies are to be compared with are the gateway options above.
+     */
+    static PhaseTimer newPhaseTimer() {
+        PhaseTimer timer = new PhaseTimer();
+        if (!CLIENT_TIMINGS_FILE.isEmpty()) {
+            timer.exportTo(Paths.get(CLIENT_TIMINGS_FILE), CLIENT_TIMINGS_INTERVAL_S);
+        }
+        return timer;
+    }
+
+    /**
+     * Adds the peers of an organization; the TLS CA of each peer is found in the test network
+     * from its host name.
+     */
+    private static void addEndpoints(final GatewayPool.Builder poolBuilder, final String mspId,
+                                     final String endpoints) {
+        for (String endpoint : endpoints.split(",")) {
+            String[] targetAndAuthority = endpoint.trim().split("/", 2);
+            String authority = targetAndAuthority[1];
+            String domain = authority.substring(authority.indexOf('.') + 1);
+            poolBuilder.endpoint(mspId, targetAndAuthority[0], authority, PATH_TO_TEST_NETWORK.resolve(Paths.get(
+                    "organizations/peerOrganizations/" + domain + "/peers/" + authority + "/tls/ca.crt")));
+        }
+    }
+
+    private static Path userCertificate(final String domain) {
+        return PATH_TO_TEST_NETWORK.resolve(Paths.get("organizations/peerOrganizations/" + domain
+                + "/users/User1@" + domain + "/msp/signcerts/cert.pem"));
+    }
+
+    private static Path userPrivateKey(final String domain) throws IOException {
+        Path keystore = PATH_TO_TEST_NETWORK.resolve(Paths.get("organizations/peerOrganizations/" + domain
+                + "/users/User1@" + domain + "/msp/keystore"));
+        try (Stream<Path> keys = Files.list(keystore)) {
+            return keys.findFirst().orElseThrow();
+        }
+    }
+
+    private static BasilClient newClient(final Contract contract, final BasilLegCache cache,
+                                         final String fallbackOrganization) {
+        BasilClient client = new BasilClient(contract, EVALUATE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                fallbackOrganization);
+        return cache == null ? client : client.withCache(cache);
+    }
+
+    /**
+     * Starts the chaincode event listener feeding the local read model, or returns null if
+     * READ_MODEL_DIR is not set.
+     */
+    private static BasilEventProjection startReadModel(final Network network) throws IOException {
+        if (READ_MODEL_DIR.isEmpty()) {
+            return null;
+        }
+        BasilEventProjection projection = BasilEventProjection.start(network, CHAINCODE_NAME,
+                Paths.get(READ_MODEL_DIR), READ_MODEL_SNAPSHOT_EVERY);
+        System.out.printf("Read model loaded with %d plants%n", projection.getReadModel().size());
+        return projection;
+    }
+
+    private static BasilReadModel getReadModel(final BasilEventProjection projection) throws Exception {
+        if (projection == null) {
+            throw new Exception("The read model is disabled, set READ_MODEL_DIR to enable it");
+        }
+        if (projection.isStale()) {
+            System.out.println("The read model is not receiving chaincode events, it may be stale");
+        }
+        return projection.getReadModel();
+    }
+
+    private static String prettyJson(final byte[] json) {
+        return BasilJson.pretty(json);
     }
 }
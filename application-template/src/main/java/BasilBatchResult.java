@@ -0,0 +1,68 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.util.Objects;
+
+public final class BasilBatchResult {
+
+    public static final String OK = "OK";
+
+    private String qr;
+
+    private String status;
+
+    public void setQr(String qr) {
+        this.qr = qr;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getQr() {
+        return qr;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isOk() {
+        return OK.equals(status);
+    }
+
+    public BasilBatchResult(final String qr, final String status) {
+        this.qr = qr;
+        this.status = status;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilBatchResult other = (BasilBatchResult) obj;
+
+        return Objects.deepEquals(
+                new String[]{getQr(), getStatus()},
+                new String[]{other.getQr(), other.getStatus()});
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getQr(), getStatus());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [qr=" + qr + ", status="
+                + status + "]";
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.fabric.client.Contract;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Reads plants from a CSV or JSON file and sends them to the contract in batches, so a
+ * whole tray of plants costs one transaction per batch instead of one per plant.
+ * <p>
+ * CSV files have one plant per line as {@code qr,extraInfo,latitude,longitude}; JSON
+ * files hold an array of BasilLeg objects.
+ * The file is streamed, so only one batch is ever held in memory.
+ * <p>
+ * When a {@link PipelinedSubmitter} is given, batches are submitted without waiting for
+ * the previous one to commit and at most the submitter's window of batches is held in
+ * memory.
+ */
+public final class BasilBulkLoader {
+
+    private final Contract contract;
+    private final String owner;
+    private final int batchSize;
+    private final PipelinedSubmitter pipeline;
+
+    private final AtomicInteger submitted = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+
+    public BasilBulkLoader(final Contract contract, final String owner, final int batchSize) {
+        this(contract, owner, batchSize, null);
+    }
+
+    public BasilBulkLoader(final Contract contract, final String owner, final int batchSize,
+                           final PipelinedSubmitter pipeline) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.contract = contract;
+        this.owner = owner;
+        this.batchSize = batchSize;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Loads the file through the given batch transaction ("CreatePlants" or "UpdatePlants").
+     */
+    public void load(final Path file, final String txName) throws Exception {
+        submitted.set(0);
+        succeeded.set(0);
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (file.getFileName().toString().toLowerCase().endsWith(".json")) {
+                loadJson(reader, txName);
+            } else {
+                loadCsv(reader, txName);
+            }
+        }
+        if (pipeline != null) {
+            pipeline.drain();
+        }
+
+        System.out.printf("%s: %d of %d plants accepted%n", txName, succeeded.get(), submitted.get());
+    }
+
+    private void loadCsv(final BufferedReader reader, final String txName) throws Exception {
+        List<BasilLeg> batch = new ArrayList<>(batchSize);
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("qr,")) {
+                continue;
+            }
+
+            String[] fields = line.split(",", 3);
+            if (fields.length < 3) {
+                throw new IOException("Malformed line, expected qr,extraInfo,latitude,longitude: " + line);
+            }
+
+            Basil basil = new Basil(fields[0].trim(), fields[1].trim(), owner);
+            batch.add(new BasilLeg(System.currentTimeMillis(), GpsPosition.parse(fields[2]), basil));
+            batch = flushIfFull(batch, txName);
+        }
+        flush(batch, txName);
+    }
+
+    private void loadJson(final BufferedReader reader, final String txName) throws Exception {
+        List<BasilLeg> batch = new ArrayList<>(batchSize);
+
+        try (JsonReader json = new JsonReader(reader)) {
+            json.beginArray();
+            while (json.hasNext()) {
+                BasilLeg basilLeg = BasilJson.readBasilLeg(json);
+                if (basilLeg.getTimestamp() == 0) {
+                    basilLeg.setTimestamp(System.currentTimeMillis());
+                }
+                if (basilLeg.getBasil().getOwner() == null) {
+                    basilLeg.getBasil().setOwner(owner);
+                }
+                batch.add(basilLeg);
+                batch = flushIfFull(batch, txName);
+            }
+            json.endArray();
+        }
+        flush(batch, txName);
+    }
+
+    private List<BasilLeg> flushIfFull(final List<BasilLeg> batch, final String txName) throws Exception {
+        if (batch.size() < batchSize) {
+            return batch;
+        }
+        flush(batch, txName);
+        return new ArrayList<>(batchSize);
+    }
+
+    private void flush(final List<BasilLeg> batch, final String txName) throws Exception {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        int size = batch.size();
+        String batchJSON = BasilJson.toJson(batch);
+
+        if (pipeline == null) {
+            byte[] result = contract.submitTransaction(txName, batchJSON);
+            onCommitted(txName, size, result);
+            return;
+        }
+
+        pipeline.submit(contract, txName, result -> {
+            if (result.getOutcome() == PipelinedSubmitter.Outcome.COMMITTED) {
+                onCommitted(txName, size, result.getPayload());
+            } else {
+                submitted.addAndGet(size);
+                System.out.printf("%s: batch of %d lost (%s): %s%n", txName, size, result.getOutcome(),
+                        result.getMessage());
+            }
+        }, batchJSON);
+    }
+
+    private void onCommitted(final String txName, final int size, final byte[] result) {
+        BasilBatchResult[] results = BasilJson.readBatchResults(result);
+
+        for (BasilBatchResult item : results) {
+            if (item.isOk()) {
+                succeeded.incrementAndGet();
+            } else {
+                System.out.printf("%s %s: %s%n", txName, item.getQr(), item.getStatus());
+            }
+        }
+        int total = submitted.addAndGet(size);
+        System.out.printf("%s: batch of %d committed (%d so far)%n", txName, size, total);
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Proposal;
+
+import io.grpc.Status;
+
+/**
+ * Typed access to the functions of the basic contract.
+ * <p>
+ * Each function is called according to its intent in the contract: reads are evaluated on a
+ * single peer and never reach the orderer, only writes are submitted. Reads use a short
+ * deadline and, if the peer picked by the gateway does not answer in time or is down, are
+ * retried once on a peer of each fallback organization in turn.
+ * <p>
+ * With a {@link BasilLegCache}, plant lookups are served from the cache unless they are
+ * strict, and every plant changed through this client is invalidated once committed.
+ * <p>
+ * With a {@link ConflictRetrySubmitter}, writes to the same plant are serialized and
+ * retried when they fail with an MVCC conflict.
+ */
+public final class BasilClient {
+
+    public enum Intent {
+        EVALUATE,
+        SUBMIT
+    }
+
+    private static final Map<String, Intent> INTENTS = new HashMap<>();
+
+    static {
+        for (String function : new String[]{"GetBasilByOwner", "GetBasilByOwnerWithPagination", "HistoryPlant",
+                "HistoryPlantRange", "CheckBasil", "GetTheStateOfPlant", "GetPlantsInBoundingBox", "GetOwnerStats", "ExportPlants"}) {
+            INTENTS.put(function, Intent.EVALUATE);
+        }
+        for (String function : new String[]{"RebuildOwnerIndex", "RebuildGeoIndex", "RebuildOwnerStats", "CreatePlant", "UpdatePlant", "CreatePlants",
+                "UpdatePlants", "TransferOwnership", "TransferOwnershipBatch", "DeletePlant", "RecordPosition"}) {
+            INTENTS.put(function, Intent.SUBMIT);
+        }
+    }
+
+    private final Contract contract;
+    private final long evaluateTimeoutMillis;
+    private final List<String> fallbackOrganizations;
+    private final BasilLegCache cache;
+    private final ConflictRetrySubmitter submitter;
+
+    /**
+     * @param evaluateTimeout       deadline of each evaluation attempt
+     * @param fallbackOrganizations MSP IDs whose peers are tried, in order, when a read fails
+     */
+    public BasilClient(final Contract contract, final long evaluateTimeout, final TimeUnit unit,
+                       final String... fallbackOrganizations) {
+        this(contract, unit.toMillis(evaluateTimeout),
+                Collections.unmodifiableList(Arrays.asList(fallbackOrganizations)), null, null);
+    }
+
+    private BasilClient(final Contract contract, final long evaluateTimeoutMillis,
+                        final List<String> fallbackOrganizations, final BasilLegCache cache,
+                        final ConflictRetrySubmitter submitter) {
+        this.contract = contract;
+        this.evaluateTimeoutMillis = evaluateTimeoutMillis;
+        this.fallbackOrganizations = fallbackOrganizations;
+        this.cache = cache;
+        this.submitter = submitter;
+    }
+
+    /**
+     * Returns a client with the same settings that looks plants up through the cache,
+     * which may be shared with other clients.
+     */
+    public BasilClient withCache(final BasilLegCache cache) {
+        return new BasilClient(contract, evaluateTimeoutMillis, fallbackOrganizations, cache, submitter);
+    }
+
+    /**
+     * Returns a client with the same settings that submits through the given submitter,
+     * which may be shared with other clients so that their writes are serialized too.
+     */
+    public BasilClient withRetry(final ConflictRetrySubmitter submitter) {
+        return new BasilClient(contract, evaluateTimeoutMillis, fallbackOrganizations, cache, submitter);
+    }
+
+    public BasilLegCache getCache() {
+        return cache;
+    }
+
+    public ConflictRetrySubmitter getSubmitter() {
+        return submitter;
+    }
+
+    public Contract getContract() {
+        return contract;
+    }
+
+    public static Intent intentOf(final String function) {
+        Intent intent = INTENTS.get(function);
+        if (intent == null) {
+            throw new IllegalArgumentException("Unknown contract function " + function);
+        }
+        return intent;
+    }
+
+    /**
+     * Evaluates or submits the function depending on its intent.
+     *
+     * @throws org.hyperledger.fabric.client.GatewayRuntimeException if a submitted transaction failed validation
+     */
+    public byte[] invoke(final String function, final String... args) throws GatewayException {
+        if (intentOf(function) == Intent.EVALUATE) {
+            return evaluate(function, args);
+        }
+        byte[] result = submitter == null
+                ? ConflictRetrySubmitter.submitAndCommit(contract, function, args)
+                : submitter.submit(contract, keysOf(function, args), function, args);
+        if (cache != null) {
+            invalidate(function, args, result);
+        }
+        return result;
+    }
+
+    // drops the plants a committed transaction changed, without waiting for its event
+    private void invalidate(final String function, final String[] args, final byte[] result) {
+        switch (function) {
+            case "TransferOwnership":
+            case "DeletePlant":
+            case "RecordPosition":
+                cache.invalidate(args[0]);
+                break;
+            case "CreatePlant":
+            case "UpdatePlant":
+                cache.invalidate(BasilJson.readBasilLeg(result).getBasil().getQr());
+                break;
+            case "CreatePlants":
+            case "UpdatePlants":
+                for (BasilBatchResult batchResult : BasilJson.readBatchResults(result)) {
+                    cache.invalidate(batchResult.getQr());
+                }
+                break;
+            case "TransferOwnershipBatch":
+                for (String qr : BasilJson.gson().fromJson(args[0], String[].class)) {
+                    cache.invalidate(qr);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // the plants a transaction writes, as found in its arguments; RecordPosition only reads
+    // the plant and writes a key of its own, so position updates are not serialized
+    private static List<String> keysOf(final String function, final String[] args) {
+        switch (function) {
+            case "TransferOwnership":
+            case "DeletePlant":
+                return Collections.singletonList(args[0]);
+            case "CreatePlant":
+            case "UpdatePlant":
+                return Collections.singletonList(
+                        BasilJson.readBasilLeg(args[0].getBytes(StandardCharsets.UTF_8)).getBasil().getQr());
+            case "CreatePlants":
+            case "UpdatePlants":
+                List<String> keys = new ArrayList<>();
+                for (BasilLeg basilLeg : BasilJson.readBasilLegs(args[0].getBytes(StandardCharsets.UTF_8))) {
+                    keys.add(basilLeg.getBasil().getQr());
+                }
+                return keys;
+            case "TransferOwnershipBatch":
+                return Arrays.asList(BasilJson.gson().fromJson(args[0], String[].class));
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    public byte[] evaluate(final String function, final String... args) throws GatewayException {
+        try {
+            return evaluateOn(function, null, args);
+        } catch (GatewayException e) {
+            GatewayException failure = e;
+            for (String organization : fallbackOrganizations) {
+                if (!isRetryable(failure)) {
+                    break;
+                }
+                try {
+                    return evaluateOn(function, organization, args);
+                } catch (GatewayException retryFailure) {
+                    failure = retryFailure;
+                }
+            }
+            throw failure;
+        }
+    }
+
+    private byte[] evaluateOn(final String function, final String organization, final String... args)
+            throws GatewayException {
+        Proposal.Builder builder = contract.newProposal(function).addArguments(args);
+        if (organization != null) {
+            builder.setEndorsingOrganizations(organization);
+        }
+        return builder.build()
+                .evaluate(options -> options.withDeadlineAfter(evaluateTimeoutMillis, TimeUnit.MILLISECONDS));
+    }
+
+    // Only failures of the peer itself are worth retrying elsewhere, not errors of the contract
+    private static boolean isRetryable(final GatewayException e) {
+        Status.Code code = e.getStatus().getCode();
+        return code == Status.Code.DEADLINE_EXCEEDED || code == Status.Code.UNAVAILABLE;
+    }
+
+    public BasilLeg createPlant(final BasilLeg basilLeg) throws GatewayException {
+        return BasilJson.readBasilLeg(invoke("CreatePlant", BasilJson.toJson(basilLeg)));
+    }
+
+    public BasilLeg updatePlant(final BasilLeg basilLeg) throws GatewayException {
+        return BasilJson.readBasilLeg(invoke("UpdatePlant", BasilJson.toJson(basilLeg)));
+    }
+
+    public void deletePlant(final String qr) throws GatewayException {
+        invoke("DeletePlant", qr);
+    }
+
+    public void recordPosition(final String qr, final GpsPosition gpsPosition, final long timestamp)
+            throws GatewayException {
+        invoke("RecordPosition", qr, gpsPosition.toArgument(), String.valueOf(timestamp));
+    }
+
+    public Basil transferOwnership(final String qr, final String buyer) throws GatewayException {
+        return BasilJson.readBasil(invoke("TransferOwnership", qr, buyer));
+    }
+
+    /**
+     * Transfers all the given plants to the buyer in one transaction, or none of them if any
+     * is not the caller's. The contract bounds the number of plants per call.
+     */
+    public BasilTransferSummary transferOwnershipBatch(final List<String> qrs, final String buyer)
+            throws GatewayException {
+        return BasilJson.readTransferSummary(invoke("TransferOwnershipBatch", BasilJson.toJson(qrs), buyer));
+    }
+
+    public BasilLeg getTheStateOfPlant(final String qr) throws GatewayException {
+        return getTheStateOfPlant(qr, false);
+    }
+
+    /**
+     * @param strict read the plant from a peer even if it is cached, for decisions that must
+     *               not be taken on a stale state such as ownership checks
+     */
+    public BasilLeg getTheStateOfPlant(final String qr, final boolean strict) throws GatewayException {
+        if (cache == null || strict) {
+            return loadTheStateOfPlant(qr);
+        }
+        return cache.get(qr, this::loadTheStateOfPlant);
+    }
+
+    private BasilLeg loadTheStateOfPlant(final String qr) throws GatewayException {
+        return BasilJson.readBasilLeg(evaluate("GetTheStateOfPlant", qr));
+    }
+
+    /**
+     * Checks the current owner of the plant on a peer, bypassing the cache.
+     */
+    public boolean isOwnedBy(final String qr, final String owner) throws GatewayException {
+        return owner.equals(getTheStateOfPlant(qr, true).getBasil().getOwner());
+    }
+
+    public boolean checkBasil(final String qr) throws GatewayException {
+        return Boolean.parseBoolean(new String(evaluate("CheckBasil", qr), StandardCharsets.UTF_8));
+    }
+
+    public BasilLeg[] historyPlant(final String qr) throws GatewayException {
+        return BasilJson.readBasilLegs(evaluate("HistoryPlant", qr));
+    }
+
+    public BasilLegPage getBasilByOwner(final String owner, final int pageSize, final String bookmark)
+            throws GatewayException {
+        return BasilJson.readBasilLegPage(evaluate("GetBasilByOwnerWithPagination", owner,
+                String.valueOf(pageSize), bookmark));
+    }
+
+    /**
+     * Returns a page of the plants whose QR code lies in [startKey, endKey); an empty key
+     * leaves that end of the range open.
+     */
+    public BasilLegPage exportPlants(final String startKey, final String endKey, final int pageSize,
+                                     final String bookmark) throws GatewayException {
+        return BasilJson.readBasilLegPage(evaluate("ExportPlants", startKey, endKey, String.valueOf(pageSize),
+                bookmark));
+    }
+
+    /**
+     * Returns the number of plants of the owner, from the counters the contract keeps
+     * instead of from the plants themselves.
+     */
+    public OwnerStats getOwnerStats(final String owner) throws GatewayException {
+        return BasilJson.readOwnerStats(evaluate("GetOwnerStats", owner));
+    }
+
+    /**
+     * Returns a page of the plants in the box; the page may hold fewer plants than
+     * {@code pageSize} even when it is not the last one.
+     */
+    public BasilLegPage getPlantsInBoundingBox(final double minLat, final double minLon, final double maxLat,
+                                               final double maxLon, final int pageSize, final String bookmark)
+            throws GatewayException {
+        return BasilJson.readBasilLegPage(evaluate("GetPlantsInBoundingBox", String.valueOf(minLat),
+                String.valueOf(minLon), String.valueOf(maxLat), String.valueOf(maxLon), String.valueOf(pageSize),
+                bookmark));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.util.Objects;
+
+public final class BasilEvent {
+
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String TRANSFERRED = "TRANSFERRED";
+    public static final String MOVED = "MOVED";
+    public static final String DELETED = "DELETED";
+
+    private String type;
+
+    private String qr;
+
+    private String owner;
+
+    private BasilLeg basilLeg;
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public void setQr(String qr) {
+        this.qr = qr;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public void setBasilLeg(BasilLeg basilLeg) {
+        this.basilLeg = basilLeg;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getQr() {
+        return qr;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * The leg written by the change, or null for a delete.
+     */
+    public BasilLeg getBasilLeg() {
+        return basilLeg;
+    }
+
+    public boolean isDelete() {
+        return DELETED.equals(type);
+    }
+
+    public BasilEvent(final String type, final String qr, final String owner, final BasilLeg basilLeg) {
+        this.type = type;
+        this.qr = qr;
+        this.owner = owner;
+        this.basilLeg = basilLeg;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilEvent other = (BasilEvent) obj;
+
+        return Objects.equals(getType(), other.getType())
+                && Objects.equals(getQr(), other.getQr())
+                && Objects.equals(getOwner(), other.getOwner())
+                && Objects.equals(getBasilLeg(), other.getBasilLeg());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getType(), getQr(), getOwner(), getBasilLeg());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [type=" + type + ", qr="
+                + qr + ", owner=" + owner + "]";
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.FileCheckpointer;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Network;
+
+/**
+ * Keeps a {@link BasilReadModel} in sync with the ledger by listening to the contract's
+ * chaincode events, so plants can be looked up locally instead of querying the peers.
+ * <p>
+ * Progress is kept in a directory holding a snapshot of the read model and a
+ * {@link FileCheckpointer}. The snapshot is always written before the checkpoint moves
+ * forward, so after a restart the listener resumes from the checkpoint and at worst replays
+ * the events received since the last snapshot, which the read model absorbs. A fresh
+ * directory replays the chain from the first block.
+ * <p>
+ * If the event stream fails, the events applied so far are saved and the listener connects
+ * again from the checkpoint, retrying with a growing delay. Until it is back the read model
+ * is {@linkplain #isStale() stale}. An event that cannot be read or applied is logged and
+ * skipped rather than stopping the listener.
+ */
+public final class BasilEventProjection implements AutoCloseable {
+
+    // Chaincode event set by the contract on every change to plants
+    public static final String CHANGE_EVENT = "BasilChanged";
+
+    private static final String SNAPSHOT_FILE = "plants.json";
+    private static final String CHECKPOINT_FILE = "checkpoint.json";
+
+    private static final long MIN_RETRY_DELAY_MS = 100;
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    private final BasilReadModel readModel = new BasilReadModel();
+    private final Path snapshot;
+    private final FileCheckpointer checkpointer;
+    private final int snapshotEvery;
+    private final Network network;
+    private final String chaincodeName;
+    private final Thread listener;
+    private final CountDownLatch closing = new CountDownLatch(1);
+
+    private volatile CloseableIterator<ChaincodeEvent> events;
+    private ChaincodeEvent lastApplied;
+    private int pending;
+    private volatile boolean stale;
+    private volatile boolean closed;
+
+    private BasilEventProjection(final Network network, final String chaincodeName, final Path directory,
+                                 final int snapshotEvery) throws IOException {
+        Files.createDirectories(directory);
+        this.snapshot = directory.resolve(SNAPSHOT_FILE);
+        this.snapshotEvery = snapshotEvery;
+        this.network = network;
+        this.chaincodeName = chaincodeName;
+
+        readModel.readSnapshot(snapshot);
+        this.checkpointer = new FileCheckpointer(directory.resolve(CHECKPOINT_FILE));
+
+        this.events = connect();
+
+        this.listener = new Thread(this::listen, "basil-events");
+        this.listener.setDaemon(true);
+    }
+
+    /**
+     * Loads the read model from {@code directory} and starts listening from its checkpoint.
+     *
+     * @param snapshotEvery number of events applied between two snapshots
+     */
+    public static BasilEventProjection start(final Network network, final String chaincodeName,
+                                             final Path directory, final int snapshotEvery) throws IOException {
+        BasilEventProjection projection = new BasilEventProjection(network, chaincodeName, directory, snapshotEvery);
+        projection.listener.start();
+        return projection;
+    }
+
+    public BasilReadModel getReadModel() {
+        return readModel;
+    }
+
+    /**
+     * Whether the event stream is down, in which case the read model may miss the latest
+     * changes until the listener has connected again. Always true once closed.
+     */
+    public boolean isStale() {
+        return stale || closed;
+    }
+
+    private CloseableIterator<ChaincodeEvent> connect() {
+        // the checkpoint takes precedence over the start block once there is one
+        return network.newChaincodeEventsRequest(chaincodeName)
+                .startBlock(0)
+                .checkpoint(checkpointer)
+                .build()
+                .getEvents();
+    }
+
+    private void listen() {
+        long retryDelayMs = MIN_RETRY_DELAY_MS;
+        while (!closed) {
+            try {
+                while (events.hasNext()) {
+                    apply(events.next());
+                    retryDelayMs = MIN_RETRY_DELAY_MS;
+                }
+            } catch (GatewayRuntimeException e) {
+                // closing the iterator also ends the stream with an error
+                if (!closed) {
+                    System.out.println("Chaincode event stream failed: " + e.getMessage());
+                }
+            }
+            if (closed) {
+                break;
+            }
+
+            stale = true;
+            // so the new stream starts right after the last event applied
+            try {
+                persist();
+            } catch (IOException e) {
+                System.out.println("Could not save the read model: " + e.getMessage());
+            }
+            try {
+                // not an interrupt from close(), which could land in a snapshot write
+                if (closing.await(retryDelayMs, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+            try {
+                events = connect();
+                if (closed) {
+                    // closed while connecting, close() saw the previous stream
+                    events.close();
+                    break;
+                }
+                stale = false;
+            } catch (GatewayRuntimeException e) {
+                System.out.println("Chaincode event stream could not reconnect: " + e.getMessage());
+            }
+        }
+    }
+
+    private void apply(final ChaincodeEvent event) {
+        if (CHANGE_EVENT.equals(event.getEventName())) {
+            try {
+                for (BasilEvent basilEvent : BasilJson.readBasilEvents(event.getPayload())) {
+                    readModel.apply(basilEvent);
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Skipping chaincode event of transaction " + event.getTransactionId() + ": "
+                        + e.getMessage());
+            }
+        }
+        try {
+            applied(event);
+        } catch (IOException e) {
+            // the checkpoint did not move, the events since the last snapshot are kept in memory
+            System.out.println("Could not save the read model: " + e.getMessage());
+        }
+    }
+
+    private synchronized void applied(final ChaincodeEvent event) throws IOException {
+        lastApplied = event;
+        if (++pending >= snapshotEvery) {
+            persist();
+        }
+    }
+
+    private synchronized void persist() throws IOException {
+        if (pending == 0) {
+            return;
+        }
+        readModel.writeSnapshot(snapshot);
+        checkpointer.checkpointChaincodeEvent(lastApplied);
+        pending = 0;
+    }
+
+    /**
+     * Stops listening and saves the events applied since the last snapshot.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        closed = true;
+        events.close();
+        closing.countDown();
+        listener.join(TimeUnit.SECONDS.toMillis(5));
+        try {
+            persist();
+        } finally {
+            checkpointer.close();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hyperledger.fabric.client.GatewayException;
+
+/**
+ * Exports every plant on the ledger to a file of newline-delimited JSON, one leg per line.
+ * <p>
+ * The key space is cut at the given split keys into disjoint ranges, which are read through
+ * the contract's {@code ExportPlants} one page at a time, several ranges in parallel. Each
+ * page is appended to the file as soon as it arrives, so at most one page per range being
+ * read is held in memory whatever the size of the ledger. Lines of different ranges are
+ * interleaved. The file is written under a temporary name and only renamed once complete.
+ * <p>
+ * Also runs on its own, for scheduled exports, configured through the EXPORT_*
+ * environment variables.
+ */
+public final class BasilExporter {
+
+    private static final String EXPORT_FILE = System.getenv().getOrDefault("EXPORT_FILE", "plants.ndjson");
+    private static final int EXPORT_PAGE_SIZE =
+            Integer.parseInt(System.getenv().getOrDefault("EXPORT_PAGE_SIZE", "500"));
+    private static final int EXPORT_PARALLELISM =
+            Integer.parseInt(System.getenv().getOrDefault("EXPORT_PARALLELISM", "4"));
+
+    // Keys the key space is cut at, comma separated; the default suits alphanumeric QR codes
+    private static final String EXPORT_SPLIT_KEYS =
+            System.getenv().getOrDefault("EXPORT_SPLIT_KEYS", "0,5,A,H,O,V,a,h,o,v");
+
+    private static final long EVALUATE_TIMEOUT_MS =
+            Long.parseLong(System.getenv().getOrDefault("EVALUATE_TIMEOUT_MS", "2000"));
+
+    private final BasilClient client;
+    private final int pageSize;
+    private final int parallelism;
+    private final List<String> splitKeys;
+
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong pages = new AtomicLong();
+
+    /**
+     * @param splitKeys keys cutting the key space into ranges, in ascending order
+     */
+    public BasilExporter(final BasilClient client, final int pageSize, final int parallelism,
+                         final List<String> splitKeys) {
+        if (pageSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Page size and parallelism must be positive");
+        }
+        this.client = client;
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+        this.splitKeys = splitKeys;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        try (GatewayPool pool = App.newGatewayPoolBuilder().build()) {
+            BasilClient client = new BasilClient(pool.getContract("Org1MSP", App.CHANNEL_NAME, App.CHAINCODE_NAME),
+                    EVALUATE_TIMEOUT_MS, TimeUnit.MILLISECONDS, "Org2MSP");
+            new BasilExporter(client, EXPORT_PAGE_SIZE, EXPORT_PARALLELISM, splitKeys(EXPORT_SPLIT_KEYS))
+                    .export(Paths.get(EXPORT_FILE));
+        }
+    }
+
+    static List<String> splitKeys(final String commaSeparated) {
+        List<String> keys = new ArrayList<>();
+        for (String key : commaSeparated.split(",")) {
+            if (!key.trim().isEmpty()) {
+                keys.add(key.trim());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Writes every plant to the file and returns how many there were.
+     */
+    public long export(final Path file) throws IOException, GatewayException, InterruptedException {
+        exported.set(0);
+        pages.set(0);
+        long start = System.nanoTime();
+
+        // "" leaves the first and last ranges open
+        List<String> bounds = new ArrayList<>();
+        bounds.add("");
+        bounds.addAll(splitKeys);
+        bounds.add("");
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "basil-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // every failure, an interrupt included, leaves no partial file behind
+        boolean complete = false;
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                List<Future<Void>> ranges = new ArrayList<>(bounds.size() - 1);
+                for (int i = 0; i < bounds.size() - 1; i++) {
+                    String startKey = bounds.get(i);
+                    String endKey = bounds.get(i + 1);
+                    ranges.add(executor.submit(() -> {
+                        exportRange(startKey, endKey, out);
+                        return null;
+                    }));
+                }
+                for (Future<Void> range : ranges) {
+                    range.get();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            complete = true;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GatewayException) {
+                throw (GatewayException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IllegalStateException("Export failed", cause);
+        } finally {
+            executor.shutdownNow();
+            if (!complete) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    System.out.println("Could not delete " + tmp + ": " + e.getMessage());
+                }
+            }
+        }
+
+        System.out.printf("Exported %d plants in %d pages to %s in %d ms%n", exported.get(), pages.get(), file,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return exported.get();
+    }
+
+    private void exportRange(final String startKey, final String endKey, final BufferedWriter out)
+            throws GatewayException, InterruptedException {
+        String bookmark = "";
+        while (true) {
+            // a range cut short by the interrupt must fail, not look exported
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Export of [" + startKey + ", " + endKey + ") interrupted");
+            }
+            BasilLegPage page = client.exportPlants(startKey, endKey, pageSize, bookmark);
+            write(page.getRecords(), out);
+            pages.incrementAndGet();
+
+            if (page.isLast(pageSize)) {
+                return;
+            }
+            bookmark = page.getBookmark();
+        }
+    }
+
+    private void write(final List<BasilLeg> basilLegs, final BufferedWriter out) {
+        StringBuilder lines = new StringBuilder(basilLegs.size() * 128);
+        for (BasilLeg basilLeg : basilLegs) {
+            lines.append(BasilJson.toJson(basilLeg)).append('\n');
+        }
+        // a whole page at a time, so lines of different ranges are never mixed up
+        synchronized (out) {
+            try {
+                out.write(lines.toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        exported.addAndGet(basilLegs.size());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * JSON encoding of the contract arguments and results on the client side.
+ * <p>
+ * Results are decoded straight from the {@code byte[]} returned by the gateway through
+ * type adapters looked up once, instead of building a String and a JsonElement tree per
+ * call. The shared Gson instance and adapters are thread-safe.
+ */
+public final class BasilJson {
+
+    private static final Gson GSON = new Gson();
+
+    private static final TypeAdapter<Basil> BASIL = GSON.getAdapter(Basil.class);
+    private static final TypeAdapter<BasilLeg> BASIL_LEG = GSON.getAdapter(BasilLeg.class);
+    private static final TypeAdapter<BasilLeg[]> BASIL_LEG_ARRAY = GSON.getAdapter(BasilLeg[].class);
+    private static final TypeAdapter<BasilLegPage> BASIL_LEG_PAGE = GSON.getAdapter(BasilLegPage.class);
+    private static final TypeAdapter<BasilBatchResult[]> BATCH_RESULTS = GSON.getAdapter(BasilBatchResult[].class);
+    private static final TypeAdapter<BasilEvent[]> BASIL_EVENTS = GSON.getAdapter(BasilEvent[].class);
+    private static final TypeAdapter<OwnerStats> OWNER_STATS = GSON.getAdapter(OwnerStats.class);
+    private static final TypeAdapter<BasilTransferSummary> TRANSFER_SUMMARY =
+            GSON.getAdapter(BasilTransferSummary.class);
+
+    private BasilJson() {
+    }
+
+    public static Gson gson() {
+        return GSON;
+    }
+
+    public static String toJson(final Object value) {
+        return GSON.toJson(value);
+    }
+
+    public static Basil readBasil(final byte[] json) {
+        return read(BASIL, json);
+    }
+
+    public static BasilLeg readBasilLeg(final byte[] json) {
+        return read(BASIL_LEG, json);
+    }
+
+    /**
+     * Reads the next leg of a streamed JSON document.
+     */
+    public static BasilLeg readBasilLeg(final JsonReader reader) throws IOException {
+        return BASIL_LEG.read(reader);
+    }
+
+    /**
+     * Writes a leg into a streamed JSON document.
+     */
+    public static void writeBasilLeg(final JsonWriter writer, final BasilLeg basilLeg) throws IOException {
+        BASIL_LEG.write(writer, basilLeg);
+    }
+
+    public static BasilLeg[] readBasilLegs(final byte[] json) {
+        return read(BASIL_LEG_ARRAY, json);
+    }
+
+    public static BasilLegPage readBasilLegPage(final byte[] json) {
+        return read(BASIL_LEG_PAGE, json);
+    }
+
+    public static BasilBatchResult[] readBatchResults(final byte[] json) {
+        return read(BATCH_RESULTS, json);
+    }
+
+    public static BasilEvent[] readBasilEvents(final byte[] json) {
+        return read(BASIL_EVENTS, json);
+    }
+
+    public static OwnerStats readOwnerStats(final byte[] json) {
+        return read(OWNER_STATS, json);
+    }
+
+    public static BasilTransferSummary readTransferSummary(final byte[] json) {
+        return read(TRANSFER_SUMMARY, json);
+    }
+
+    private static <T> T read(final TypeAdapter<T> adapter, final byte[] json) {
+        try (JsonReader reader = newReader(json)) {
+            return adapter.read(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Re-indents a JSON result for display by copying it token by token, without
+     * materializing it as a tree.
+     */
+    public static String pretty(final byte[] json) {
+        StringWriter out = new StringWriter(json.length * 2);
+        try (JsonReader reader = newReader(json); JsonWriter writer = new JsonWriter(out)) {
+            writer.setIndent("  ");
+            copy(reader, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static JsonReader newReader(final byte[] json) {
+        return new JsonReader(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+    }
+
+    private static void copy(final JsonReader reader, final JsonWriter writer) throws IOException {
+        JsonToken token;
+        while ((token = reader.peek()) != JsonToken.END_DOCUMENT) {
+            switch (token) {
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    writer.beginArray();
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    writer.endArray();
+                    break;
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    writer.beginObject();
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    writer.endObject();
+                    break;
+                case NAME:
+                    writer.name(reader.nextName());
+                    break;
+                case STRING:
+                    writer.value(reader.nextString());
+                    break;
+                case NUMBER:
+                    writer.jsonValue(reader.nextString());
+                    break;
+                case BOOLEAN:
+                    writer.value(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    writer.nullValue();
+                    break;
+                default:
+                    throw new IOException("Unexpected JSON token " + token);
+            }
+        }
+    }
+}
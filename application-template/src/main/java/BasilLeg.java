@@ -10,7 +10,7 @@ public final class BasilLeg {
 
     private long timestamp;
 
-    private String gpsPosition;
+    private GpsPosition gpsPosition;
 
     private Basil basil;
 
@@ -18,7 +18,7 @@ public final class BasilLeg {
         this.timestamp = timestamp;
     }
 
-    public void setGpsPosition(String gpsPosition) {
+    public void setGpsPosition(GpsPosition gpsPosition) {
         this.gpsPosition = gpsPosition;
     }
 
@@ -30,7 +30,7 @@ public final class BasilLeg {
         return timestamp;
     }
 
-    public String getGpsPosition() {
+    public GpsPosition getGpsPosition() {
         return gpsPosition;
     }
 
@@ -38,7 +38,7 @@ public final class BasilLeg {
         return basil;
     }
 
-    public BasilLeg(final long timestamp, final String gpsPosition,
+    public BasilLeg(final long timestamp, final GpsPosition gpsPosition,
                     final Basil basil) {
         this.timestamp = timestamp;
         this.gpsPosition = gpsPosition;
@@ -58,8 +58,8 @@ public final class BasilLeg {
         BasilLeg other = (BasilLeg) obj;
 
         return Objects.deepEquals(
-                new String[]{String.valueOf(getTimestamp()), getGpsPosition(), String.valueOf(getBasil())},
-                new String[]{String.valueOf(other.getTimestamp()), other.getGpsPosition(), String.valueOf(getBasil())});
+                new String[]{String.valueOf(getTimestamp()), String.valueOf(getGpsPosition()), String.valueOf(getBasil())},
+                new String[]{String.valueOf(other.getTimestamp()), String.valueOf(other.getGpsPosition()), String.valueOf(getBasil())});
     }
 
     @Override
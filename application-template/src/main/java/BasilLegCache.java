@@ -0,0 +1,271 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.InMemoryCheckpointer;
+import org.hyperledger.fabric.client.Network;
+
+/**
+ * Bounded read-through cache of the current leg of each plant, keyed by QR code.
+ * <p>
+ * Entries are evicted least recently used first once the cache is full, and are reloaded
+ * after {@code ttl}. A plant is dropped from the cache when the chaincode events of a
+ * committed transaction report a change to it (see {@link #subscribe}), and when it is
+ * changed through a {@link BasilClient} sharing the cache, so the TTL only bounds how stale
+ * an entry can get if an event is missed. While a subscription has lost its event stream
+ * the cache is bypassed, every lookup going to the peer, until the stream is back.
+ */
+public final class BasilLegCache {
+
+    @FunctionalInterface
+    public interface Loader {
+        BasilLeg load(String qr) throws GatewayException;
+    }
+
+    private static final class Entry {
+
+        private final BasilLeg basilLeg;
+        private final long expiresAt;
+
+        Entry(final BasilLeg basilLeg, final long expiresAt) {
+            this.basilLeg = basilLeg;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    // bumped by every invalidation, so a load that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    // false while the invalidation events may be missed, nothing is cached then
+    private volatile boolean enabled = true;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public BasilLegCache(final int maxSize, final long ttl, final TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                if (size() > BasilLegCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached leg of the plant, or loads it and caches it on a miss.
+     */
+    public BasilLeg get(final String qr, final Loader loader) throws GatewayException {
+        if (!enabled) {
+            misses.increment();
+            return loader.load(qr);
+        }
+
+        long now = System.nanoTime();
+        synchronized (this) {
+            Entry entry = entries.get(qr);
+            if (entry != null) {
+                if (now - entry.expiresAt < 0) {
+                    hits.increment();
+                    return entry.basilLeg;
+                }
+                entries.remove(qr);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+
+        // load outside the lock, concurrent misses on the same plant may both go to the peer
+        long loadGeneration = generation.get();
+        BasilLeg basilLeg = loader.load(qr);
+        synchronized (this) {
+            if (basilLeg != null && enabled && generation.get() == loadGeneration) {
+                entries.put(qr, new Entry(basilLeg, System.nanoTime() + ttlNanos));
+            }
+        }
+        return basilLeg;
+    }
+
+    public synchronized void invalidate(final String qr) {
+        generation.incrementAndGet();
+        if (entries.remove(qr) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    private synchronized void setEnabled(final boolean enabled) {
+        // a load that started on either side of the switch is not cached
+        invalidateAll();
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Drops every expired entry, for callers that want to release memory without waiting
+     * for the entries to be looked up again.
+     */
+    public synchronized void evictExpired() {
+        long now = System.nanoTime();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().expiresAt >= 0) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Invalidates the plants changed by each committed transaction of the chaincode, from
+     * the current block on, until the returned subscription is closed. If the event stream
+     * fails the cache is dropped and bypassed while the subscription connects again, from
+     * the last event it received so no change is missed, retrying with a growing delay.
+     */
+    public Subscription subscribe(final Network network, final String chaincodeName) {
+        return new Subscription(network, chaincodeName);
+    }
+
+    public final class Subscription implements AutoCloseable {
+
+        private static final long MIN_RETRY_DELAY_MS = 100;
+        private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+        private final Network network;
+        private final String chaincodeName;
+        private final InMemoryCheckpointer checkpointer = new InMemoryCheckpointer();
+        private final Thread listener;
+        private volatile CloseableIterator<ChaincodeEvent> events;
+        private volatile boolean closed;
+
+        private Subscription(final Network network, final String chaincodeName) {
+            this.network = network;
+            this.chaincodeName = chaincodeName;
+            // the first stream starts at the current block, later ones at the checkpoint
+            this.events = network.getChaincodeEvents(chaincodeName);
+            this.listener = new Thread(this::listen, "basil-cache-invalidation");
+            this.listener.setDaemon(true);
+            this.listener.start();
+        }
+
+        private void listen() {
+            long retryDelayMs = MIN_RETRY_DELAY_MS;
+            while (!closed) {
+                try {
+                    while (events.hasNext()) {
+                        ChaincodeEvent event = events.next();
+                        if (BasilEventProjection.CHANGE_EVENT.equals(event.getEventName())) {
+                            for (BasilEvent basilEvent : BasilJson.readBasilEvents(event.getPayload())) {
+                                invalidate(basilEvent.getQr());
+                            }
+                        }
+                        checkpointer.checkpointChaincodeEvent(event);
+                        retryDelayMs = MIN_RETRY_DELAY_MS;
+                    }
+                } catch (GatewayRuntimeException e) {
+                    if (!closed) {
+                        System.out.println("Cache invalidation stream failed: " + e.getMessage());
+                    }
+                }
+                if (closed) {
+                    break;
+                }
+
+                setEnabled(false);
+                try {
+                    Thread.sleep(retryDelayMs);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+                try {
+                    events = network.newChaincodeEventsRequest(chaincodeName)
+                            .checkpoint(checkpointer)
+                            .build()
+                            .getEvents();
+                    if (closed) {
+                        // closed while connecting, close() saw the previous stream
+                        events.close();
+                        break;
+                    }
+                    setEnabled(true);
+                } catch (GatewayRuntimeException e) {
+                    System.out.println("Cache invalidation stream could not reconnect: " + e.getMessage());
+                }
+            }
+            setEnabled(false);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            events.close();
+            listener.interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [size=" + size() + ", hits=" + getHits() + ", misses="
+                + getMisses() + ", evictions=" + getEvictions() + ", invalidations=" + getInvalidations() + "]";
+    }
+}
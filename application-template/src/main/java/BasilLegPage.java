@@ -0,0 +1,84 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.util.List;
+import java.util.Objects;
+
+public final class BasilLegPage {
+
+
+    private List<BasilLeg> records;
+
+    private String bookmark;
+
+    private int fetchedCount;
+
+    public void setRecords(List<BasilLeg> records) {
+        this.records = records;
+    }
+
+    public void setBookmark(String bookmark) {
+        this.bookmark = bookmark;
+    }
+
+    public void setFetchedCount(int fetchedCount) {
+        this.fetchedCount = fetchedCount;
+    }
+
+    public List<BasilLeg> getRecords() {
+        return records;
+    }
+
+    public String getBookmark() {
+        return bookmark;
+    }
+
+    public int getFetchedCount() {
+        return fetchedCount;
+    }
+
+    public BasilLegPage(final List<BasilLeg> records, final String bookmark,
+                        final int fetchedCount) {
+        this.records = records;
+        this.bookmark = bookmark;
+        this.fetchedCount = fetchedCount;
+    }
+
+    /**
+     * A page is the last one when the peer fetched fewer records than requested
+     * or did not hand back a bookmark to continue from.
+     */
+    public boolean isLast(final int pageSize) {
+        return bookmark == null || bookmark.isEmpty() || fetchedCount < pageSize;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilLegPage other = (BasilLegPage) obj;
+
+        return Objects.equals(getRecords(), other.getRecords())
+                && Objects.equals(getBookmark(), other.getBookmark())
+                && getFetchedCount() == other.getFetchedCount();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getRecords(), getBookmark(), getFetchedCount());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [fetchedCount=" + fetchedCount
+                + ", bookmark=" + bookmark + "]";
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Local copy of the current plants, indexed by QR code and by owner, kept up to date by
+ * applying the contract's {@link BasilEvent}s.
+ * <p>
+ * Events carry the whole leg, so applying an event twice leaves the model unchanged; this is
+ * what lets the projection replay events from an older checkpoint after a crash. There is a
+ * single writer, readers never block and may observe a change to one index shortly before
+ * the other.
+ */
+public final class BasilReadModel {
+
+    private final ConcurrentMap<String, BasilLeg> byQr = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> byOwner = new ConcurrentHashMap<>();
+
+    public BasilLeg get(final String qr) {
+        return byQr.get(qr);
+    }
+
+    public List<BasilLeg> getByOwner(final String owner) {
+        Set<String> qrs = byOwner.getOrDefault(owner, Collections.emptySet());
+        List<BasilLeg> basilLegs = new ArrayList<>(qrs.size());
+        for (String qr : qrs) {
+            BasilLeg basilLeg = byQr.get(qr);
+            if (basilLeg != null) {
+                basilLegs.add(basilLeg);
+            }
+        }
+        return basilLegs;
+    }
+
+    public int size() {
+        return byQr.size();
+    }
+
+    public synchronized void apply(final BasilEvent event) {
+        if (event.isDelete()) {
+            remove(event.getQr());
+        } else {
+            put(event.getBasilLeg());
+        }
+    }
+
+    private void put(final BasilLeg basilLeg) {
+        Basil basil = basilLeg.getBasil();
+        BasilLeg previous = byQr.put(basil.getQr(), basilLeg);
+        if (previous != null && !previous.getBasil().getOwner().equals(basil.getOwner())) {
+            unindex(previous.getBasil().getOwner(), basil.getQr());
+        }
+        byOwner.computeIfAbsent(basil.getOwner(), owner -> ConcurrentHashMap.newKeySet()).add(basil.getQr());
+    }
+
+    private void remove(final String qr) {
+        BasilLeg previous = byQr.remove(qr);
+        if (previous != null) {
+            unindex(previous.getBasil().getOwner(), qr);
+        }
+    }
+
+    private void unindex(final String owner, final String qr) {
+        Set<String> qrs = byOwner.get(owner);
+        if (qrs != null) {
+            qrs.remove(qr);
+        }
+    }
+
+    /**
+     * Writes every plant to a JSON array file. The file is written next to the target and
+     * moved over it, so a crash never leaves a partial snapshot behind.
+     */
+    public synchronized void writeSnapshot(final Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8);
+             JsonWriter writer = new JsonWriter(out)) {
+            writer.beginArray();
+            for (BasilLeg basilLeg : byQr.values()) {
+                BasilJson.writeBasilLeg(writer, basilLeg);
+            }
+            writer.endArray();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot written by {@link #writeSnapshot(Path)}, if there is one.
+     */
+    public synchronized void readSnapshot(final Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(in)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                put(BasilJson.readBasilLeg(reader));
+            }
+            reader.endArray();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.util.Objects;
+
+/**
+ * Outcome of a batch ownership transfer, as returned by the contract: how many plants of
+ * the seller now belong to the buyer.
+ */
+public final class BasilTransferSummary {
+
+    private String seller;
+
+    private String buyer;
+
+    private int transferred;
+
+    public void setSeller(String seller) {
+        this.seller = seller;
+    }
+
+    public void setBuyer(String buyer) {
+        this.buyer = buyer;
+    }
+
+    public void setTransferred(int transferred) {
+        this.transferred = transferred;
+    }
+
+    public String getSeller() {
+        return seller;
+    }
+
+    public String getBuyer() {
+        return buyer;
+    }
+
+    public int getTransferred() {
+        return transferred;
+    }
+
+    public BasilTransferSummary(final String seller, final String buyer, final int transferred) {
+        this.seller = seller;
+        this.buyer = buyer;
+        this.transferred = transferred;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilTransferSummary other = (BasilTransferSummary) obj;
+
+        return Objects.equals(getSeller(), other.getSeller()) && Objects.equals(getBuyer(), other.getBuyer())
+                && getTransferred() == other.getTransferred();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getSeller(), getBuyer(), getTransferred());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [seller=" + seller
+                + ", buyer=" + buyer + ", transferred=" + transferred + "]";
+    }
+}
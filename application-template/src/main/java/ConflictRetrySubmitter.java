@@ -0,0 +1,174 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+
+/**
+ * Submits transactions so that they are not lost to MVCC conflicts.
+ * <p>
+ * Transactions of this client that touch the same plant are submitted one at a time: each
+ * key maps to one of a fixed number of striped locks, held from endorsement until commit,
+ * so two of our own writes never read the same version of a plant. A transaction that
+ * still fails validation with {@code MVCC_READ_CONFLICT} or {@code PHANTOM_READ_CONFLICT},
+ * because another client wrote the plant in between, is endorsed and submitted again after
+ * a random backoff, up to {@code maxAttempts} times. Other failures are not retried.
+ * <p>
+ * The commit status is asked for right after the submission rather than through
+ * {@code submitTransaction}, so a {@link PhaseTimer} sees the submission and the commit wait
+ * apart. A {@code CommitException} can only be built by the gateway library, so a
+ * transaction that fails validation raises a {@link GatewayRuntimeException} with status
+ * {@code ABORTED} instead, see {@link #commitFailure}.
+ */
+public final class ConflictRetrySubmitter {
+
+    private final ReentrantLock[] stripes;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final LongAdder submissions = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * @param stripes           number of locks the keys are spread over
+     * @param maxAttempts       attempts per transaction, including the first one
+     * @param baseBackoffMillis upper bound of the wait before the first retry, doubled on each retry
+     * @param maxBackoffMillis  upper bound of the wait before any retry
+     */
+    public ConflictRetrySubmitter(final int stripes, final int maxAttempts, final long baseBackoffMillis,
+                                  final long maxBackoffMillis) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Number of stripes must be positive: " + stripes);
+        }
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Number of attempts must be positive: " + maxAttempts);
+        }
+        // not monitors: a virtual thread waiting for a commit while holding one would pin its carrier
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Submits the transaction while holding the locks of the given keys, and retries it on
+     * MVCC conflicts.
+     *
+     * @param keys the QR codes of the plants the transaction writes, may be empty
+     * @throws GatewayRuntimeException if the last attempt failed validation
+     */
+    public byte[] submit(final Contract contract, final Collection<String> keys, final String function,
+                         final String... args) throws GatewayException {
+        // taken in ascending order, so transactions on several keys cannot deadlock
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        for (String key : keys) {
+            stripeIndexes.add(Math.floorMod(key.hashCode(), stripes.length));
+        }
+        for (int index : stripeIndexes) {
+            stripes[index].lock();
+        }
+        try {
+            return submitWithRetry(contract, function, args);
+        } finally {
+            for (int index : stripeIndexes.descendingSet()) {
+                stripes[index].unlock();
+            }
+        }
+    }
+
+    private byte[] submitWithRetry(final Contract contract, final String function, final String... args)
+            throws GatewayException {
+        for (int attempt = 1; ; attempt++) {
+            submissions.increment();
+            SubmittedTransaction submitted = contract.newProposal(function).addArguments(args).build().endorse()
+                    .submitAsync();
+            Status status = submitted.getStatus();
+            if (status.isSuccessful()) {
+                return submitted.getResult();
+            }
+            if (PipelinedSubmitter.classify(status.getCode()) != PipelinedSubmitter.Outcome.MVCC_CONFLICT) {
+                throw commitFailure(status);
+            }
+            conflicts.increment();
+            if (attempt == maxAttempts) {
+                exhausted.increment();
+                throw commitFailure(status);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoffMillis(attempt));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw commitFailure(status);
+            }
+        }
+    }
+
+    /**
+     * Submits the transaction once and waits for its commit, like {@code submitTransaction}
+     * but with the commit status asked for by the caller.
+     *
+     * @throws GatewayRuntimeException if the transaction failed validation
+     */
+    static byte[] submitAndCommit(final Contract contract, final String function, final String... args)
+            throws GatewayException {
+        SubmittedTransaction submitted = contract.newProposal(function).addArguments(args).build().endorse()
+                .submitAsync();
+        Status status = submitted.getStatus();
+        if (!status.isSuccessful()) {
+            throw commitFailure(status);
+        }
+        return submitted.getResult();
+    }
+
+    // worded like the CommitException of the gateway library
+    static GatewayRuntimeException commitFailure(final Status status) {
+        return new GatewayRuntimeException(io.grpc.Status.ABORTED
+                .withDescription("Transaction " + status.getTransactionId() + " failed to commit with status code "
+                        + status.getCode().getNumber() + " (" + status.getCode().name() + ")")
+                .asRuntimeException());
+    }
+
+    // full jitter, so writers that conflicted with each other do not retry in lockstep
+    private long backoffMillis(final int attempt) {
+        long bound = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    public long getSubmissions() {
+        return submissions.sum();
+    }
+
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    /**
+     * Transactions that were still in conflict after the last attempt.
+     */
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [submissions=" + getSubmissions() + ", conflicts="
+                + getConflicts() + ", exhausted=" + getExhausted() + "]";
+    }
+}
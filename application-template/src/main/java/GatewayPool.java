@@ -0,0 +1,525 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.client.Proposal;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.Transaction;
+import org.hyperledger.fabric.client.identity.Identities;
+import org.hyperledger.fabric.client.identity.Identity;
+import org.hyperledger.fabric.client.identity.Signer;
+import org.hyperledger.fabric.client.identity.Signers;
+import org.hyperledger.fabric.client.identity.X509Identity;
+
+import io.grpc.CallOptions;
+import io.grpc.ChannelCredentials;
+import io.grpc.ConnectivityState;
+import io.grpc.Grpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.TlsChannelCredentials;
+
+/**
+ * Gateway connections to several peers of each organization, shared by any number of
+ * threads.
+ * <p>
+ * Every endpoint gets its own gRPC channel, and one {@link Gateway} per organization using
+ * it, so calls are spread over several HTTP/2 connections. The identity and signer of each
+ * organization are read once. {@link #getContract} returns a thread-safe {@link Contract}
+ * that sends each call to the healthy endpoint of the organization with the fewest calls in
+ * flight, and records in-flight count, latency and failures per endpoint.
+ * <p>
+ * An endpoint is considered down while its channel is failing to connect, and for a short
+ * time after a call failed with {@code UNAVAILABLE}; if every endpoint is down, calls still
+ * go to the least loaded one so they fail fast instead of waiting for a recovery.
+ */
+public final class GatewayPool implements AutoCloseable {
+
+    private static final long DOWN_AFTER_FAILURE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * One peer endpoint of an organization, with its usage statistics.
+     */
+    public static final class Endpoint {
+
+        private final String mspId;
+        private final String target;
+        private final ManagedChannel channel;
+        private final Gateway gateway;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private volatile long downUntil = System.nanoTime();
+
+        Endpoint(final String mspId, final String target, final ManagedChannel channel, final Gateway gateway) {
+            this.mspId = mspId;
+            this.target = target;
+            this.channel = channel;
+            this.gateway = gateway;
+        }
+
+        public String getMspId() {
+            return mspId;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public boolean isHealthy() {
+            ConnectivityState state = channel.getState(false);
+            return state != ConnectivityState.TRANSIENT_FAILURE && state != ConnectivityState.SHUTDOWN
+                    && System.nanoTime() - downUntil >= 0;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public double getAverageLatencyMillis() {
+            long count = getCalls();
+            return count == 0 ? 0 : totalNanos.sum() / 1e6 / count;
+        }
+
+        private long begin() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void end(final long start, final Exception failure) {
+            totalNanos.add(System.nanoTime() - start);
+            calls.increment();
+            inFlight.decrementAndGet();
+            if (failure != null) {
+                failures.increment();
+                if (failure instanceof GatewayException
+                        && ((GatewayException) failure).getStatus().getCode() == Status.Code.UNAVAILABLE) {
+                    downUntil = System.nanoTime() + DOWN_AFTER_FAILURE_NANOS;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + " [mspId=" + mspId + ", target=" + target + ", healthy="
+                    + isHealthy() + ", inFlight=" + getInFlight() + ", calls=" + getCalls() + ", failures="
+                    + getFailures() + ", avgLatencyMs=" + String.format("%.2f", getAverageLatencyMillis()) + "]";
+        }
+    }
+
+    private final Map<String, List<Endpoint>> endpoints;
+
+    private GatewayPool(final Map<String, List<Endpoint>> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static final class EndpointConfig {
+
+        private final String target;
+        private final String overrideAuthority;
+        private final Path tlsCaCertificate;
+
+        EndpointConfig(final String target, final String overrideAuthority, final Path tlsCaCertificate) {
+            this.target = target;
+            this.overrideAuthority = overrideAuthority;
+            this.tlsCaCertificate = tlsCaCertificate;
+        }
+    }
+
+    public static final class Builder {
+
+        private final Map<String, Identity> identities = new LinkedHashMap<>();
+        private final Map<String, Signer> signers = new LinkedHashMap<>();
+        private final Map<String, List<EndpointConfig>> endpoints = new LinkedHashMap<>();
+        private UnaryOperator<Gateway.Builder> gatewayOptions = UnaryOperator.identity();
+
+        private Builder() {
+        }
+
+        /**
+         * Reads the client certificate and private key of an organization.
+         */
+        public Builder organization(final String mspId, final Path certificate, final Path privateKey)
+                throws IOException, CertificateException, InvalidKeyException {
+            try (BufferedReader certificateReader = Files.newBufferedReader(certificate);
+                 BufferedReader keyReader = Files.newBufferedReader(privateKey)) {
+                identities.put(mspId, new X509Identity(mspId, Identities.readX509Certificate(certificateReader)));
+                signers.put(mspId, Signers.newPrivateKeySigner(Identities.readPrivateKey(keyReader)));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a peer of an organization.
+         *
+         * @param target            host:port of the peer
+         * @param overrideAuthority host name the peer TLS certificate was issued for
+         * @param tlsCaCertificate  CA certificate of the peer TLS certificate
+         */
+        public Builder endpoint(final String mspId, final String target, final String overrideAuthority,
+                                final Path tlsCaCertificate) {
+            endpoints.computeIfAbsent(mspId, key -> new ArrayList<>())
+                    .add(new EndpointConfig(target, overrideAuthority, tlsCaCertificate));
+            return this;
+        }
+
+        /**
+         * Options applied to every gateway, such as the default call deadlines.
+         */
+        public Builder gatewayOptions(final UnaryOperator<Gateway.Builder> gatewayOptions) {
+            this.gatewayOptions = gatewayOptions;
+            return this;
+        }
+
+        public GatewayPool build() throws IOException {
+            Map<String, List<Endpoint>> pool = new LinkedHashMap<>();
+            // peers shared by several organizations still get a single channel
+            Map<String, ManagedChannel> channels = new LinkedHashMap<>();
+
+            for (Entry<String, List<EndpointConfig>> organization : endpoints.entrySet()) {
+                String mspId = organization.getKey();
+                if (!identities.containsKey(mspId)) {
+                    throw new IllegalStateException("No identity for organization " + mspId);
+                }
+
+                List<Endpoint> organizationEndpoints = new ArrayList<>();
+                for (EndpointConfig endpoint : organization.getValue()) {
+                    String target = endpoint.target;
+                    ManagedChannel channel = channels.get(target);
+                    if (channel == null) {
+                        ChannelCredentials credentials = TlsChannelCredentials.newBuilder()
+                                .trustManager(endpoint.tlsCaCertificate.toFile())
+                                .build();
+                        channel = Grpc.newChannelBuilder(target, credentials)
+                                .overrideAuthority(endpoint.overrideAuthority)
+                                .build();
+                        channels.put(target, channel);
+                    }
+
+                    Gateway gateway = gatewayOptions.apply(Gateway.newInstance()
+                                    .identity(identities.get(mspId))
+                                    .signer(signers.get(mspId))
+                                    .connection(channel))
+                            .connect();
+                    organizationEndpoints.add(new Endpoint(mspId, target, channel, gateway));
+                }
+                pool.put(mspId, Collections.unmodifiableList(organizationEndpoints));
+            }
+            return new GatewayPool(Collections.unmodifiableMap(pool));
+        }
+    }
+
+    public List<Endpoint> getEndpoints(final String mspId) {
+        List<Endpoint> organizationEndpoints = endpoints.get(mspId);
+        if (organizationEndpoints == null) {
+            throw new IllegalArgumentException("No endpoint for organization " + mspId);
+        }
+        return organizationEndpoints;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        List<Endpoint> all = new ArrayList<>();
+        endpoints.values().forEach(all::addAll);
+        return all;
+    }
+
+    /**
+     * Returns the network through a healthy endpoint, e.g. to listen to events; unlike
+     * contracts, it stays bound to that endpoint.
+     */
+    public Network getNetwork(final String mspId, final String channelName) {
+        return choose(mspId).gateway.getNetwork(channelName);
+    }
+
+    public Contract getContract(final String mspId, final String channelName, final String chaincodeName) {
+        return new PooledContract(mspId, channelName, chaincodeName);
+    }
+
+    private Endpoint choose(final String mspId) {
+        Endpoint best = null;
+        boolean bestHealthy = false;
+        for (Endpoint endpoint : getEndpoints(mspId)) {
+            boolean healthy = endpoint.isHealthy();
+            if (best == null || (healthy && !bestHealthy)
+                    || (healthy == bestHealthy && endpoint.getInFlight() < best.getInFlight())) {
+                best = endpoint;
+                bestHealthy = healthy;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        List<ManagedChannel> channels = new ArrayList<>();
+        for (Endpoint endpoint : getEndpoints()) {
+            endpoint.gateway.close();
+            if (!channels.contains(endpoint.channel)) {
+                channels.add(endpoint.channel);
+            }
+        }
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Evaluation {
+        byte[] evaluate(Contract contract) throws GatewayException;
+    }
+
+    @FunctionalInterface
+    private interface Submission {
+        byte[] submit(Contract contract)
+                throws EndorseException, SubmitException, CommitStatusException, CommitException;
+    }
+
+    /**
+     * Sends every call to the endpoint chosen at that moment.
+     */
+    private final class PooledContract implements Contract {
+
+        private final String mspId;
+        private final String channelName;
+        private final String chaincodeName;
+
+        PooledContract(final String mspId, final String channelName, final String chaincodeName) {
+            this.mspId = mspId;
+            this.channelName = channelName;
+            this.chaincodeName = chaincodeName;
+        }
+
+        private Contract contractOf(final Endpoint endpoint) {
+            return endpoint.gateway.getNetwork(channelName).getContract(chaincodeName);
+        }
+
+        private byte[] evaluate(final Evaluation evaluation) throws GatewayException {
+            Endpoint endpoint = choose(mspId);
+            long start = endpoint.begin();
+            Exception failure = null;
+            try {
+                return evaluation.evaluate(contractOf(endpoint));
+            } catch (GatewayException | RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                endpoint.end(start, failure);
+            }
+        }
+
+        private byte[] submit(final Submission submission)
+                throws EndorseException, SubmitException, CommitStatusException, CommitException {
+            Endpoint endpoint = choose(mspId);
+            long start = endpoint.begin();
+            Exception failure = null;
+            try {
+                return submission.submit(contractOf(endpoint));
+            } catch (EndorseException | SubmitException | CommitStatusException | CommitException
+                     | RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                endpoint.end(start, failure);
+            }
+        }
+
+        @Override
+        public String getChaincodeName() {
+            return chaincodeName;
+        }
+
+        @Override
+        public Optional<String> getContractName() {
+            return Optional.empty();
+        }
+
+        @Override
+        public byte[] submitTransaction(final String name)
+                throws EndorseException, CommitException, SubmitException, CommitStatusException {
+            return submit(contract -> contract.submitTransaction(name));
+        }
+
+        @Override
+        public byte[] submitTransaction(final String name, final String... args)
+                throws EndorseException, SubmitException, CommitStatusException, CommitException {
+            return submit(contract -> contract.submitTransaction(name, args));
+        }
+
+        @Override
+        public byte[] submitTransaction(final String name, final byte[]... args)
+                throws EndorseException, CommitException, SubmitException, CommitStatusException {
+            return submit(contract -> contract.submitTransaction(name, args));
+        }
+
+        @Override
+        public byte[] evaluateTransaction(final String name) throws GatewayException {
+            return evaluate(contract -> contract.evaluateTransaction(name));
+        }
+
+        @Override
+        public byte[] evaluateTransaction(final String name, final String... args) throws GatewayException {
+            return evaluate(contract -> contract.evaluateTransaction(name, args));
+        }
+
+        @Override
+        public byte[] evaluateTransaction(final String name, final byte[]... args) throws GatewayException {
+            return evaluate(contract -> contract.evaluateTransaction(name, args));
+        }
+
+        /**
+         * The endpoint is chosen when the proposal is built; its evaluation or endorsement
+         * is recorded in the endpoint statistics, the later submit and commit are not.
+         */
+        @Override
+        public Proposal.Builder newProposal(final String name) {
+            Endpoint endpoint = choose(mspId);
+            return new PooledProposalBuilder(endpoint, contractOf(endpoint).newProposal(name));
+        }
+    }
+
+    private static final class PooledProposalBuilder implements Proposal.Builder {
+
+        private final Endpoint endpoint;
+        private final Proposal.Builder builder;
+
+        PooledProposalBuilder(final Endpoint endpoint, final Proposal.Builder builder) {
+            this.endpoint = endpoint;
+            this.builder = builder;
+        }
+
+        @Override
+        public Proposal.Builder addArguments(final byte[]... args) {
+            builder.addArguments(args);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder addArguments(final String... args) {
+            builder.addArguments(args);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder putAllTransient(final Map<String, byte[]> transientData) {
+            builder.putAllTransient(transientData);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder putTransient(final String key, final byte[] value) {
+            builder.putTransient(key, value);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder putTransient(final String key, final String value) {
+            builder.putTransient(key, value);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder setEndorsingOrganizations(final String... mspids) {
+            builder.setEndorsingOrganizations(mspids);
+            return this;
+        }
+
+        @Override
+        public Proposal build() {
+            return new PooledProposal(endpoint, builder.build());
+        }
+    }
+
+    private static final class PooledProposal implements Proposal {
+
+        private final Endpoint endpoint;
+        private final Proposal proposal;
+
+        PooledProposal(final Endpoint endpoint, final Proposal proposal) {
+            this.endpoint = endpoint;
+            this.proposal = proposal;
+        }
+
+        @Override
+        public String getTransactionId() {
+            return proposal.getTransactionId();
+        }
+
+        @Override
+        public byte[] evaluate(final UnaryOperator<CallOptions> options) throws GatewayException {
+            long start = endpoint.begin();
+            GatewayException failure = null;
+            try {
+                return proposal.evaluate(options);
+            } catch (GatewayException e) {
+                failure = e;
+                throw e;
+            } finally {
+                endpoint.end(start, failure);
+            }
+        }
+
+        @Override
+        public Transaction endorse(final UnaryOperator<CallOptions> options) throws EndorseException {
+            long start = endpoint.begin();
+            EndorseException failure = null;
+            try {
+                return proposal.endorse(options);
+            } catch (EndorseException e) {
+                failure = e;
+                throw e;
+            } finally {
+                endpoint.end(start, failure);
+            }
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return proposal.getBytes();
+        }
+
+        @Override
+        public byte[] getDigest() {
+            return proposal.getDigest();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.io.IOException;
+import java.util.Objects;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Latitude and longitude of a plant, in decimal degrees (WGS84).
+ * <p>
+ * Written as {@code {"latitude":..,"longitude":..}}. The "latitude,longitude" strings of
+ * events and read model snapshots from before positions were typed are still read; a
+ * string that does not parse reads as no position.
+ */
+@JsonAdapter(GpsPosition.Adapter.class)
+public final class GpsPosition {
+
+    private double latitude;
+
+    private double longitude;
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public GpsPosition(final double latitude, final double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Parses "latitude,longitude", the form the contract takes positions in as arguments.
+     *
+     * @throws IllegalArgumentException if the text is not two numbers in range
+     */
+    public static GpsPosition parse(final String text) {
+        String[] parts = text.split(",");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected latitude,longitude: " + text);
+        }
+
+        GpsPosition position;
+        try {
+            position = new GpsPosition(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected latitude,longitude: " + text, e);
+        }
+        if (position.latitude < -90 || position.latitude > 90 || position.longitude < -180
+                || position.longitude > 180) {
+            throw new IllegalArgumentException("Position out of range: " + text);
+        }
+        return position;
+    }
+
+    public String toArgument() {
+        return latitude + "," + longitude;
+    }
+
+    static final class Adapter extends TypeAdapter<GpsPosition> {
+
+        @Override
+        public void write(final JsonWriter out, final GpsPosition position) throws IOException {
+            if (position == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("latitude").value(position.latitude);
+            out.name("longitude").value(position.longitude);
+            out.endObject();
+        }
+
+        @Override
+        public GpsPosition read(final JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            if (token == JsonToken.STRING) {
+                try {
+                    return parse(in.nextString());
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+
+            double latitude = 0;
+            double longitude = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("latitude".equals(name)) {
+                    latitude = in.nextDouble();
+                } else if ("longitude".equals(name)) {
+                    longitude = in.nextDouble();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return new GpsPosition(latitude, longitude);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        GpsPosition other = (GpsPosition) obj;
+
+        return Double.compare(getLatitude(), other.getLatitude()) == 0
+                && Double.compare(getLongitude(), other.getLongitude()) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getLatitude(), getLongitude());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [latitude=" + latitude
+                + ", longitude=" + longitude + "]";
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+
+/**
+ * Non-interactive load generator for the basic contract.
+ * <p>
+ * LOAD_WORKERS workers, each on its own virtual thread, send a weighted mix of operations
+ * (LOAD_MIX) at a combined target rate of LOAD_RATE operations per second for
+ * LOAD_DURATION_S seconds. Updates, transfers and lookups pick among LOAD_PLANTS plants
+ * created before the run, so concurrent writes to the same plant cause MVCC conflicts as
+ * they would in production.
+ * <p>
+ * Latency is measured from the time each operation was scheduled to start, not from when
+ * it actually started, so a slow network does not hide the queueing it causes. With
+ * LOAD_OFFLINE=true the load runs against a {@link LocalGateway} instead of the network.
+ * <p>
+ * The latencies of the endorsement, submission and commit wait of each transaction are
+ * printed at the end by a {@link PhaseTimer}, and written to CLIENT_TIMINGS_FILE if set.
+ */
+public final class LoadGenerator {
+
+    private static final String ORG1 = "Org1MSP";
+    private static final String ORG2 = "Org2MSP";
+
+    private static final int WORKERS = Integer.parseInt(System.getenv().getOrDefault("LOAD_WORKERS", "64"));
+    private static final double RATE = Double.parseDouble(System.getenv().getOrDefault("LOAD_RATE", "200"));
+    private static final int DURATION_S = Integer.parseInt(System.getenv().getOrDefault("LOAD_DURATION_S", "60"));
+    private static final int PLANTS = Integer.parseInt(System.getenv().getOrDefault("LOAD_PLANTS", "200"));
+    private static final String MIX = System.getenv().getOrDefault("LOAD_MIX",
+            "CreatePlant=10,UpdatePlant=30,TransferOwnership=10,GetTheStateOfPlant=40,GetBasilByOwner=10");
+    private static final boolean OFFLINE = Boolean.parseBoolean(System.getenv().getOrDefault("LOAD_OFFLINE", "false"));
+
+    // Simulated latencies of the offline stand-in
+    private static final long LOCAL_EVALUATE_MS = Long.parseLong(System.getenv().getOrDefault("LOCAL_EVALUATE_MS", "2"));
+    private static final long LOCAL_ENDORSE_MS = Long.parseLong(System.getenv().getOrDefault("LOCAL_ENDORSE_MS", "10"));
+    private static final long LOCAL_COMMIT_MS = Long.parseLong(System.getenv().getOrDefault("LOCAL_COMMIT_MS", "200"));
+
+    private static final long EVALUATE_TIMEOUT_MS =
+            Long.parseLong(System.getenv().getOrDefault("EVALUATE_TIMEOUT_MS", "2000"));
+    private static final int PAGE_SIZE = Integer.parseInt(System.getenv().getOrDefault("PAGE_SIZE", "100"));
+    private static final int SEED_BATCH_SIZE = 100;
+
+    // Keeps the plants of different runs apart
+    private static final String RUN_ID = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<String, Contract> contracts;
+    private final Map<String, BasilClient> clients = new LinkedHashMap<>();
+
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+
+    private final String[] plants = new String[PLANTS];
+    private final ConcurrentMap<String, String> owners = new ConcurrentHashMap<>();
+    private final AtomicLong created = new AtomicLong();
+
+    private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+    private final Map<PipelinedSubmitter.Outcome, LongAdder> outcomes = new EnumMap<>(PipelinedSubmitter.Outcome.class);
+    // calls that threw, per operation; a failed write is also counted in its outcome
+    private final Map<String, LongAdder> failures = new LinkedHashMap<>();
+
+    public LoadGenerator(final Map<String, Contract> contracts) {
+        this.contracts = contracts;
+        clients.put(ORG1, new BasilClient(contracts.get(ORG1), EVALUATE_TIMEOUT_MS, TimeUnit.MILLISECONDS, ORG2));
+        clients.put(ORG2, new BasilClient(contracts.get(ORG2), EVALUATE_TIMEOUT_MS, TimeUnit.MILLISECONDS, ORG1));
+
+        String[] entries = MIX.split(",");
+        operations = new String[entries.length];
+        cumulativeWeights = new int[entries.length];
+        int totalWeight = 0;
+        for (int i = 0; i < entries.length; i++) {
+            String[] operationAndWeight = entries[i].trim().split("=");
+            operations[i] = operationAndWeight[0];
+            BasilClient.intentOf(operations[i]);
+            totalWeight += Integer.parseInt(operationAndWeight[1]);
+            cumulativeWeights[i] = totalWeight;
+            latencies.put(operations[i], new ConcurrentHistogram(3));
+            failures.put(operations[i], new LongAdder());
+        }
+        for (PipelinedSubmitter.Outcome outcome : PipelinedSubmitter.Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (OFFLINE) {
+            LocalGateway gateway = new LocalGateway(LOCAL_EVALUATE_MS, LOCAL_ENDORSE_MS, LOCAL_COMMIT_MS);
+            try (PhaseTimer timer = App.newPhaseTimer()) {
+                new LoadGenerator(Map.of(
+                        ORG1, timer.wrap(gateway.getContract(ORG1), ORG1),
+                        ORG2, timer.wrap(gateway.getContract(ORG2), ORG2))).run();
+                System.out.printf("%n%s", timer);
+            }
+            return;
+        }
+
+        try (GatewayPool pool = App.newGatewayPoolBuilder().build();
+             PhaseTimer timer = App.newPhaseTimer()) {
+            new LoadGenerator(Map.of(
+                    ORG1, timer.wrap(pool.getContract(ORG1, App.CHANNEL_NAME, App.CHAINCODE_NAME), ORG1),
+                    ORG2, timer.wrap(pool.getContract(ORG2, App.CHANNEL_NAME, App.CHAINCODE_NAME), ORG2))).run();
+            System.out.printf("%n%s", timer);
+            for (GatewayPool.Endpoint endpoint : pool.getEndpoints()) {
+                System.out.println(endpoint);
+            }
+        }
+    }
+
+    public void run() throws Exception {
+        seed();
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) * WORKERS / RATE);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(DURATION_S);
+        System.out.printf("Running %d workers at %.0f ops/s for %ds%s%n", WORKERS, RATE, DURATION_S,
+                OFFLINE ? " against the local stand-in" : "");
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < WORKERS; i++) {
+                executor.submit(() -> work(start, end, intervalNanos));
+            }
+        }
+        report(System.nanoTime() - start);
+    }
+
+    /**
+     * Creates the plants the other operations work on, split between the two organizations.
+     */
+    private void seed() throws Exception {
+        List<BasilLeg> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < PLANTS; i++) {
+            plants[i] = "load-" + RUN_ID + "-seed-" + i;
+            String owner = i % 2 == 0 ? ORG1 : ORG2;
+            owners.put(plants[i], owner);
+            batch.add(newBasilLeg(plants[i], owner));
+
+            if (batch.size() == SEED_BATCH_SIZE || i == PLANTS - 1) {
+                contracts.get(ORG1).submitTransaction("CreatePlants", BasilJson.toJson(batch));
+                batch.clear();
+            }
+        }
+        System.out.printf("Created %d plants%n", PLANTS);
+    }
+
+    private static BasilLeg newBasilLeg(final String qr, final String owner) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        GpsPosition gpsPosition = new GpsPosition(45 + random.nextDouble(), 9 + random.nextDouble());
+        return new BasilLeg(System.currentTimeMillis(), gpsPosition, new Basil(qr, "load test", owner));
+    }
+
+    private void work(final long start, final long end, final long intervalNanos) {
+        // spread the workers over the first interval instead of starting them all at once
+        long intended = start + ThreadLocalRandom.current().nextLong(Math.max(1, intervalNanos));
+        while (intended < end) {
+            // parkNanos may return early, e.g. on a permit left by a previous call
+            for (long wait = intended - System.nanoTime(); wait > 0; wait = intended - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String operation = pickOperation();
+            perform(operation);
+            latencies.get(operation).recordValue(Math.max(0, System.nanoTime() - intended) / 1000);
+            intended += intervalNanos;
+        }
+    }
+
+    private String pickOperation() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private String randomPlant() {
+        return plants[ThreadLocalRandom.current().nextInt(plants.length)];
+    }
+
+    private void perform(final String operation) {
+        String qr = randomPlant();
+        String owner = owners.get(qr);
+        try {
+            switch (operation) {
+                case "CreatePlant":
+                    String newQr = "load-" + RUN_ID + "-" + created.incrementAndGet();
+                    submit(ORG1, "CreatePlant", BasilJson.toJson(newBasilLeg(newQr, ORG1)));
+                    break;
+                case "UpdatePlant":
+                    submit(owner, "UpdatePlant", BasilJson.toJson(newBasilLeg(qr, owner)));
+                    break;
+                case "TransferOwnership":
+                    String buyer = ORG1.equals(owner) ? ORG2 : ORG1;
+                    if (submit(owner, "TransferOwnership", qr, buyer) == PipelinedSubmitter.Outcome.COMMITTED) {
+                        owners.replace(qr, owner, buyer);
+                    }
+                    break;
+                case "GetTheStateOfPlant":
+                    clients.get(owner).getTheStateOfPlant(qr);
+                    break;
+                case "GetBasilByOwner":
+                    clients.get(owner).getBasilByOwner(owner, PAGE_SIZE, "");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Operation not supported by the load generator: " + operation);
+            }
+        } catch (GatewayException | RuntimeException e) {
+            // one failed call must not stop the worker and the schedule of its later operations
+            failures.get(operation).increment();
+        }
+    }
+
+    /**
+     * Endorses and submits a transaction, then waits for its commit status.
+     */
+    private PipelinedSubmitter.Outcome submit(final String org, final String function, final String... args) {
+        PipelinedSubmitter.Outcome outcome;
+        try {
+            SubmittedTransaction submitted = contracts.get(org).newProposal(function)
+                    .addArguments(args)
+                    .build()
+                    .endorse()
+                    .submitAsync();
+            outcome = PipelinedSubmitter.classify(submitted.getStatus().getCode());
+        } catch (EndorseException e) {
+            outcome = PipelinedSubmitter.Outcome.ENDORSEMENT_FAILURE;
+        } catch (SubmitException | CommitStatusException e) {
+            outcome = PipelinedSubmitter.Outcome.FAILED;
+        }
+        outcomes.get(outcome).increment();
+        return outcome;
+    }
+
+    private void report(final long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        Histogram total = new Histogram(3);
+
+        long totalFailures = 0;
+
+        System.out.printf("%n%-20s %9s %9s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "failed", "ops/s",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Histogram> entry : latencies.entrySet()) {
+            long operationFailures = failures.get(entry.getKey()).sum();
+            printLatencies(entry.getKey(), entry.getValue(), operationFailures, seconds);
+            total.add(entry.getValue());
+            totalFailures += operationFailures;
+        }
+        printLatencies("total", total, totalFailures, seconds);
+
+        System.out.printf("%ncommitted: %d, MVCC conflicts: %d, endorsement failures: %d, failed: %d%n",
+                outcomes.get(PipelinedSubmitter.Outcome.COMMITTED).sum(),
+                outcomes.get(PipelinedSubmitter.Outcome.MVCC_CONFLICT).sum(),
+                outcomes.get(PipelinedSubmitter.Outcome.ENDORSEMENT_FAILURE).sum(),
+                outcomes.get(PipelinedSubmitter.Outcome.FAILED).sum());
+    }
+
+    private static void printLatencies(final String name, final Histogram histogram, final long failures,
+                                       final double seconds) {
+        System.out.printf("%-20s %9d %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getTotalCount(),
+                failures, histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+}
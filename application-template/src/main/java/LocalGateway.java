@@ -0,0 +1,525 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Proposal;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+import org.hyperledger.fabric.client.Transaction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+
+import io.grpc.CallOptions;
+
+/**
+ * In-process stand-in for a Fabric network running the basic contract, to exercise clients
+ * such as the {@link LoadGenerator} without a network.
+ * <p>
+ * It implements the plant transactions on an in-memory ledger behind the gateway
+ * {@link Contract} API. Each step sleeps for a configurable latency, and commits are
+ * validated like a peer does: a transaction whose reads changed since its endorsement fails
+ * with {@code MVCC_READ_CONFLICT}. Contract errors are raised at endorsement or evaluation.
+ * <p>
+ * Only the proposal flow reports invalid transactions the way Fabric does, through the
+ * commit {@link Status}; since a {@link CommitException} can only be built by the gateway
+ * library, {@code submitTransaction} and {@code Transaction.submit} raise a
+ * {@link GatewayRuntimeException} instead.
+ */
+public final class LocalGateway {
+
+    private static final class Versioned {
+
+        private final BasilLeg basilLeg;
+        private final long version;
+
+        Versioned(final BasilLeg basilLeg, final long version) {
+            this.basilLeg = basilLeg;
+            this.version = version;
+        }
+    }
+
+    // What a transaction read and wrote when it was endorsed
+    private static final class Execution {
+
+        private final Map<String, Long> reads = new HashMap<>();
+        private final Map<String, BasilLeg> writes = new HashMap<>();
+        private byte[] result;
+    }
+
+    private final ConcurrentMap<String, Versioned> state = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, NavigableSet<String>> owners = new ConcurrentHashMap<>();
+    private final long evaluateLatencyMillis;
+    private final long endorseLatencyMillis;
+    private final long commitLatencyMillis;
+    private long version;
+
+    /**
+     * @param evaluateLatencyMillis time taken by a query
+     * @param endorseLatencyMillis  time taken by the endorsement of a transaction
+     * @param commitLatencyMillis   time between the submission of a transaction and its commit
+     */
+    public LocalGateway(final long evaluateLatencyMillis, final long endorseLatencyMillis,
+                        final long commitLatencyMillis) {
+        this.evaluateLatencyMillis = evaluateLatencyMillis;
+        this.endorseLatencyMillis = endorseLatencyMillis;
+        this.commitLatencyMillis = commitLatencyMillis;
+    }
+
+    public int size() {
+        return state.size();
+    }
+
+    /**
+     * Returns the contract as seen by a client of the organization.
+     */
+    public Contract getContract(final String mspId) {
+        return new LocalContract(mspId);
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayRuntimeException(io.grpc.Status.CANCELLED.withCause(e).asRuntimeException());
+        }
+    }
+
+    private static io.grpc.StatusRuntimeException contractError(final String message) {
+        return io.grpc.Status.ABORTED.withDescription(message).asRuntimeException();
+    }
+
+    private Versioned read(final Execution execution, final String qr) {
+        Versioned versioned = state.get(qr);
+        execution.reads.put(qr, versioned == null ? 0L : versioned.version);
+        return versioned;
+    }
+
+    private BasilLeg load(final Execution execution, final String qr) {
+        Versioned versioned = read(execution, qr);
+        if (versioned == null) {
+            throw contractError(String.format("Basil %s does not exists", qr));
+        }
+        return versioned.basilLeg;
+    }
+
+    private static void checkOwner(final BasilLeg basilLeg, final String mspId) {
+        if (!basilLeg.getBasil().getOwner().equals(mspId)) {
+            throw contractError(String.format("Your are not the owner of %s", basilLeg.getBasil().getQr()));
+        }
+    }
+
+    private static byte[] json(final Object value) {
+        return BasilJson.toJson(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs a contract function against the current state; writes are only recorded.
+     */
+    private Execution execute(final String mspId, final String function, final List<String> args) {
+        Execution execution = new Execution();
+        switch (function) {
+            case "CreatePlant": {
+                BasilLeg basilLeg = BasilJson.readBasilLeg(args.get(0).getBytes(StandardCharsets.UTF_8));
+                if (read(execution, basilLeg.getBasil().getQr()) != null) {
+                    throw contractError(String.format("Basil %s already exists", basilLeg.getBasil().getQr()));
+                }
+                execution.writes.put(basilLeg.getBasil().getQr(), basilLeg);
+                execution.result = json(basilLeg);
+                break;
+            }
+            case "CreatePlants": {
+                List<BasilBatchResult> results = new ArrayList<>();
+                for (BasilLeg basilLeg : BasilJson.readBasilLegs(args.get(0).getBytes(StandardCharsets.UTF_8))) {
+                    String qr = basilLeg.getBasil().getQr();
+                    if (execution.writes.containsKey(qr) || read(execution, qr) != null) {
+                        results.add(new BasilBatchResult(qr, "BASIL_ALREADY_EXISTS"));
+                        continue;
+                    }
+                    execution.writes.put(qr, basilLeg);
+                    results.add(new BasilBatchResult(qr, BasilBatchResult.OK));
+                }
+                execution.result = json(results);
+                break;
+            }
+            case "UpdatePlant": {
+                BasilLeg basilLeg = BasilJson.readBasilLeg(args.get(0).getBytes(StandardCharsets.UTF_8));
+                checkOwner(basilLeg, mspId);
+                checkOwner(load(execution, basilLeg.getBasil().getQr()), mspId);
+                execution.writes.put(basilLeg.getBasil().getQr(), basilLeg);
+                execution.result = json(basilLeg);
+                break;
+            }
+            case "TransferOwnership": {
+                BasilLeg stored = load(execution, args.get(0));
+                checkOwner(stored, mspId);
+                Basil basil = new Basil(stored.getBasil().getQr(), stored.getBasil().getExtraInfo(), args.get(1));
+                execution.writes.put(args.get(0), new BasilLeg(stored.getTimestamp(), stored.getGpsPosition(), basil));
+                execution.result = json(basil);
+                break;
+            }
+            case "TransferOwnershipBatch": {
+                String[] qrs = BasilJson.gson().fromJson(args.get(0), String[].class);
+                for (String qr : qrs) {
+                    if (execution.writes.containsKey(qr)) {
+                        throw contractError(String.format("Basil %s is listed more than once", qr));
+                    }
+                    BasilLeg stored = load(execution, qr);
+                    checkOwner(stored, mspId);
+                    Basil basil = new Basil(qr, stored.getBasil().getExtraInfo(), args.get(1));
+                    execution.writes.put(qr, new BasilLeg(stored.getTimestamp(), stored.getGpsPosition(), basil));
+                }
+                execution.result = json(new BasilTransferSummary(mspId, args.get(1), qrs.length));
+                break;
+            }
+            case "DeletePlant": {
+                checkOwner(load(execution, args.get(0)), mspId);
+                execution.writes.put(args.get(0), null);
+                break;
+            }
+            case "GetTheStateOfPlant":
+                execution.result = json(load(execution, args.get(0)));
+                break;
+            case "CheckBasil":
+                boolean exists = read(execution, args.get(0)) != null;
+                execution.result = String.valueOf(exists).getBytes(StandardCharsets.UTF_8);
+                break;
+            case "GetBasilByOwner":
+                execution.result = json(plantsOf(args.get(0), "", Integer.MAX_VALUE));
+                break;
+            case "GetBasilByOwnerWithPagination": {
+                int pageSize = Integer.parseInt(args.get(1));
+                List<BasilLeg> records = plantsOf(args.get(0), args.get(2), pageSize + 1);
+                String bookmark = "";
+                if (records.size() > pageSize) {
+                    bookmark = records.remove(pageSize).getBasil().getQr();
+                }
+                execution.result = json(new BasilLegPage(records, bookmark, records.size()));
+                break;
+            }
+            default:
+                throw contractError("Undefined contract method called");
+        }
+        return execution;
+    }
+
+    private List<BasilLeg> plantsOf(final String owner, final String bookmark, final int limit) {
+        List<BasilLeg> basilLegs = new ArrayList<>();
+        NavigableSet<String> qrs = owners.getOrDefault(owner, Collections.emptyNavigableSet());
+        for (String qr : bookmark.isEmpty() ? qrs : qrs.tailSet(bookmark, true)) {
+            Versioned versioned = state.get(qr);
+            if (versioned != null) {
+                basilLegs.add(versioned.basilLeg);
+                if (basilLegs.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return basilLegs;
+    }
+
+    /**
+     * Validates and applies the writes of a transaction, as the committing peer would.
+     */
+    private synchronized TxValidationCode commit(final Execution execution) {
+        for (Map.Entry<String, Long> read : execution.reads.entrySet()) {
+            Versioned current = state.get(read.getKey());
+            long currentVersion = current == null ? 0L : current.version;
+            if (currentVersion != read.getValue()) {
+                return TxValidationCode.MVCC_READ_CONFLICT;
+            }
+        }
+
+        version++;
+        for (Map.Entry<String, BasilLeg> write : execution.writes.entrySet()) {
+            String qr = write.getKey();
+            Versioned previous = write.getValue() == null
+                    ? state.remove(qr)
+                    : state.put(qr, new Versioned(write.getValue(), version));
+            if (previous != null) {
+                owners.get(previous.basilLeg.getBasil().getOwner()).remove(qr);
+            }
+            if (write.getValue() != null) {
+                owners.computeIfAbsent(write.getValue().getBasil().getOwner(), owner -> new ConcurrentSkipListSet<>())
+                        .add(qr);
+            }
+        }
+        return TxValidationCode.VALID;
+    }
+
+    private final class LocalContract implements Contract {
+
+        private final String mspId;
+
+        LocalContract(final String mspId) {
+            this.mspId = mspId;
+        }
+
+        @Override
+        public String getChaincodeName() {
+            return "basic";
+        }
+
+        @Override
+        public Optional<String> getContractName() {
+            return Optional.empty();
+        }
+
+        @Override
+        public byte[] submitTransaction(final String name)
+                throws EndorseException, CommitException, SubmitException, CommitStatusException {
+            return newProposal(name).build().endorse().submit();
+        }
+
+        @Override
+        public byte[] submitTransaction(final String name, final String... args)
+                throws EndorseException, SubmitException, CommitStatusException, CommitException {
+            return newProposal(name).addArguments(args).build().endorse().submit();
+        }
+
+        @Override
+        public byte[] submitTransaction(final String name, final byte[]... args)
+                throws EndorseException, CommitException, SubmitException, CommitStatusException {
+            return newProposal(name).addArguments(args).build().endorse().submit();
+        }
+
+        @Override
+        public byte[] evaluateTransaction(final String name) throws GatewayException {
+            return newProposal(name).build().evaluate();
+        }
+
+        @Override
+        public byte[] evaluateTransaction(final String name, final String... args) throws GatewayException {
+            return newProposal(name).addArguments(args).build().evaluate();
+        }
+
+        @Override
+        public byte[] evaluateTransaction(final String name, final byte[]... args) throws GatewayException {
+            return newProposal(name).addArguments(args).build().evaluate();
+        }
+
+        @Override
+        public Proposal.Builder newProposal(final String name) {
+            return new LocalProposalBuilder(mspId, name);
+        }
+    }
+
+    private final class LocalProposalBuilder implements Proposal.Builder {
+
+        private final String mspId;
+        private final String function;
+        private final List<String> args = new ArrayList<>();
+
+        LocalProposalBuilder(final String mspId, final String function) {
+            this.mspId = mspId;
+            this.function = function;
+        }
+
+        @Override
+        public Proposal.Builder addArguments(final byte[]... args) {
+            for (byte[] arg : args) {
+                this.args.add(new String(arg, StandardCharsets.UTF_8));
+            }
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder addArguments(final String... args) {
+            Collections.addAll(this.args, args);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder putAllTransient(final Map<String, byte[]> transientData) {
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder putTransient(final String key, final byte[] value) {
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder putTransient(final String key, final String value) {
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder setEndorsingOrganizations(final String... mspids) {
+            return this;
+        }
+
+        @Override
+        public Proposal build() {
+            return new LocalProposal(mspId, function, new ArrayList<>(args));
+        }
+    }
+
+    private final class LocalProposal implements Proposal {
+
+        private final String transactionId = UUID.randomUUID().toString();
+        private final String mspId;
+        private final String function;
+        private final List<String> args;
+
+        LocalProposal(final String mspId, final String function, final List<String> args) {
+            this.mspId = mspId;
+            this.function = function;
+            this.args = args;
+        }
+
+        @Override
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        @Override
+        public byte[] evaluate(final UnaryOperator<CallOptions> options) throws GatewayException {
+            sleep(evaluateLatencyMillis);
+            try {
+                return execute(mspId, function, args).result;
+            } catch (io.grpc.StatusRuntimeException e) {
+                throw new GatewayException(e);
+            }
+        }
+
+        @Override
+        public Transaction endorse(final UnaryOperator<CallOptions> options) throws EndorseException {
+            sleep(endorseLatencyMillis);
+            try {
+                return new LocalTransaction(transactionId, execute(mspId, function, args));
+            } catch (io.grpc.StatusRuntimeException e) {
+                throw new EndorseException(transactionId, e);
+            }
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] getDigest() {
+            return new byte[0];
+        }
+    }
+
+    private final class LocalTransaction implements Transaction, SubmittedTransaction {
+
+        private final String transactionId;
+        private final Execution execution;
+        // not a monitor: a virtual thread sleeping while holding one would pin its carrier
+        private final ReentrantLock statusLock = new ReentrantLock();
+        private Status status;
+
+        LocalTransaction(final String transactionId, final Execution execution) {
+            this.transactionId = transactionId;
+            this.execution = execution;
+        }
+
+        @Override
+        public byte[] getResult() {
+            return execution.result == null ? new byte[0] : execution.result;
+        }
+
+        @Override
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        @Override
+        public byte[] submit(final UnaryOperator<CallOptions> options) throws CommitStatusException {
+            Status commitStatus = getStatus(options);
+            if (!commitStatus.isSuccessful()) {
+                throw new GatewayRuntimeException(io.grpc.Status.ABORTED
+                        .withDescription("Transaction " + transactionId + " failed to commit with status code "
+                                + commitStatus.getCode().getNumber() + " (" + commitStatus.getCode().name() + ")")
+                        .asRuntimeException());
+            }
+            return getResult();
+        }
+
+        @Override
+        public SubmittedTransaction submitAsync(final UnaryOperator<CallOptions> options) {
+            return this;
+        }
+
+        @Override
+        public Status getStatus(final UnaryOperator<CallOptions> options) {
+            statusLock.lock();
+            try {
+                if (status == null) {
+                    sleep(commitLatencyMillis);
+                    status = new LocalStatus(transactionId, commit(execution));
+                }
+                return status;
+            } finally {
+                statusLock.unlock();
+            }
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] getDigest() {
+            return new byte[0];
+        }
+    }
+
+    private static final class LocalStatus implements Status {
+
+        private final String transactionId;
+        private final TxValidationCode code;
+
+        LocalStatus(final String transactionId, final TxValidationCode code) {
+            this.transactionId = transactionId;
+            this.code = code;
+        }
+
+        @Override
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        @Override
+        public long getBlockNumber() {
+            return 0;
+        }
+
+        @Override
+        public TxValidationCode getCode() {
+            return code;
+        }
+
+        @Override
+        public boolean isSuccessful() {
+            return code == TxValidationCode.VALID;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.util.Objects;
+
+/**
+ * Number of plants of an owner, as counted by the contract, and the time (epoch
+ * milliseconds) it last changed.
+ */
+public final class OwnerStats {
+
+    private String owner;
+
+    private long plantCount;
+
+    private long lastUpdate;
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public void setPlantCount(long plantCount) {
+        this.plantCount = plantCount;
+    }
+
+    public void setLastUpdate(long lastUpdate) {
+        this.lastUpdate = lastUpdate;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getPlantCount() {
+        return plantCount;
+    }
+
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    public OwnerStats(final String owner, final long plantCount, final long lastUpdate) {
+        this.owner = owner;
+        this.plantCount = plantCount;
+        this.lastUpdate = lastUpdate;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        OwnerStats other = (OwnerStats) obj;
+
+        return Objects.equals(getOwner(), other.getOwner()) && getPlantCount() == other.getPlantCount()
+                && getLastUpdate() == other.getLastUpdate();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getOwner(), getPlantCount(), getLastUpdate());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [owner=" + owner
+                + ", plantCount=" + plantCount + ", lastUpdate=" + lastUpdate + "]";
+    }
+}
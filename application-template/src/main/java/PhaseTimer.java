@@ -0,0 +1,539 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Proposal;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+import org.hyperledger.fabric.client.Transaction;
+
+import io.grpc.CallOptions;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Latency of each stage of the gateway calls, per organization and transaction name: the
+ * evaluation of reads, and the endorsement, submission to the orderer and commit wait of
+ * writes, each with its own deadline in the gateway options.
+ * <p>
+ * {@link #wrap} returns a {@link Contract} that times the calls it passes on, whether they
+ * go through {@code submitTransaction} or a proposal. Failed calls are timed too, since a
+ * call cut by its deadline is what the deadline is tuned against.
+ * <p>
+ * The submission and the commit wait are only timed apart when the caller makes them
+ * apart, with {@code submitAsync} and {@code getStatus}, as BasilClient and
+ * ConflictRetrySubmitter do; {@code submit} and {@code submitTransaction} run both in the
+ * gateway library, which also builds the CommitException of an invalid transaction, so
+ * they are timed as one
+ * {@link Phase#SUBMIT_AND_COMMIT}. The commit wait is the time spent in the first
+ * {@code getStatus} call, the span its deadline applies to: a caller asking for the status
+ * right after submitting sees the whole wait, one asking later, like PipelinedSubmitter,
+ * only what was left of it.
+ * <p>
+ * The percentiles can be written to a JSON file, periodically and on {@link #close()}.
+ */
+public final class PhaseTimer implements AutoCloseable {
+
+    public enum Phase {
+        EVALUATE,
+        ENDORSE,
+        SUBMIT,
+        COMMIT,
+        SUBMIT_AND_COMMIT
+    }
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final class Series {
+
+        private final String organization;
+        private final String transaction;
+        private final Phase phase;
+        private final Histogram micros = new ConcurrentHistogram(3);
+        private final LongAdder failures = new LongAdder();
+
+        Series(final String organization, final String transaction, final Phase phase) {
+            this.organization = organization;
+            this.transaction = transaction;
+            this.phase = phase;
+        }
+    }
+
+    /**
+     * Percentiles of one phase of one transaction of an organization, in milliseconds.
+     */
+    public static final class PhaseStats {
+
+        private final String organization;
+        private final String transaction;
+        private final Phase phase;
+        private final long count;
+        private final long failures;
+        private final double p50Ms;
+        private final double p90Ms;
+        private final double p99Ms;
+        private final double p999Ms;
+        private final double maxMs;
+
+        PhaseStats(final Series series) {
+            Histogram histogram = series.micros.copy();
+            this.organization = series.organization;
+            this.transaction = series.transaction;
+            this.phase = series.phase;
+            this.count = histogram.getTotalCount();
+            this.failures = series.failures.sum();
+            this.p50Ms = histogram.getValueAtPercentile(50) / 1000.0;
+            this.p90Ms = histogram.getValueAtPercentile(90) / 1000.0;
+            this.p99Ms = histogram.getValueAtPercentile(99) / 1000.0;
+            this.p999Ms = histogram.getValueAtPercentile(99.9) / 1000.0;
+            this.maxMs = histogram.getMaxValue() / 1000.0;
+        }
+
+        public String getOrganization() {
+            return organization;
+        }
+
+        public String getTransaction() {
+            return transaction;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public double getP50Ms() {
+            return p50Ms;
+        }
+
+        public double getP90Ms() {
+            return p90Ms;
+        }
+
+        public double getP99Ms() {
+            return p99Ms;
+        }
+
+        public double getP999Ms() {
+            return p999Ms;
+        }
+
+        public double getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %-30s %-17s %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f", organization,
+                    transaction, phase, count, failures, p50Ms, p90Ms, p99Ms, p999Ms, maxMs);
+        }
+    }
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService exporter;
+    private Path exportFile;
+
+    /**
+     * Returns a contract passing every call on to the given one and timing it as a call of
+     * the given organization.
+     */
+    public Contract wrap(final Contract contract, final String mspId) {
+        return new TimedContract(this, mspId, contract);
+    }
+
+    void record(final String mspId, final String transaction, final Phase phase, final long nanos,
+                final boolean failed) {
+        Series phaseSeries = series.computeIfAbsent(mspId + '/' + transaction + '/' + phase,
+                key -> new Series(mspId, transaction, phase));
+        phaseSeries.micros.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (failed) {
+            phaseSeries.failures.increment();
+        }
+    }
+
+    /**
+     * Returns the percentiles so far, sorted by organization, transaction and phase.
+     */
+    public List<PhaseStats> getStats() {
+        List<PhaseStats> stats = new ArrayList<>();
+        for (Series phaseSeries : new TreeMap<>(series).values()) {
+            stats.add(new PhaseStats(phaseSeries));
+        }
+        return stats;
+    }
+
+    /**
+     * Writes the percentiles so far to the file as a JSON array, replacing it at once so a
+     * reader never sees a partial file.
+     */
+    public void writeTo(final Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            GSON.toJson(getStats(), out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the percentiles to the file every given number of seconds, on a daemon thread,
+     * and a last time when the timer is closed.
+     */
+    public synchronized void exportTo(final Path file, final long intervalSeconds) {
+        if (exporter != null) {
+            throw new IllegalStateException("Already exporting to " + exportFile);
+        }
+        exportFile = file;
+        exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "phase-timer-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        exporter.scheduleAtFixedRate(() -> {
+            try {
+                writeTo(file);
+            } catch (IOException e) {
+                System.out.println("Could not write " + file + ": " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (exporter != null) {
+            exporter.shutdownNow();
+            writeTo(exportFile);
+            exporter = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(String.format("%-8s %-30s %-17s %8s %8s %9s %9s %9s %9s %9s%n",
+                "org", "transaction", "phase", "count", "failed", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (PhaseStats stats : getStats()) {
+            out.append(stats).append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+
+    private static final class TimedContract implements Contract {
+
+        private final PhaseTimer timer;
+        private final String mspId;
+        private final Contract contract;
+
+        TimedContract(final PhaseTimer timer, final String mspId, final Contract contract) {
+            this.timer = timer;
+            this.mspId = mspId;
+            this.contract = contract;
+        }
+
+        @Override
+        public String getChaincodeName() {
+            return contract.getChaincodeName();
+        }
+
+        @Override
+        public Optional<String> getContractName() {
+            return contract.getContractName();
+        }
+
+        // as the gateway library does, but through the timed proposal so each stage is seen
+        @Override
+        public byte[] submitTransaction(final String name)
+                throws EndorseException, CommitException, SubmitException, CommitStatusException {
+            return newProposal(name).build().endorse().submit();
+        }
+
+        @Override
+        public byte[] submitTransaction(final String name, final String... args)
+                throws EndorseException, SubmitException, CommitStatusException, CommitException {
+            return newProposal(name).addArguments(args).build().endorse().submit();
+        }
+
+        @Override
+        public byte[] submitTransaction(final String name, final byte[]... args)
+                throws EndorseException, CommitException, SubmitException, CommitStatusException {
+            return newProposal(name).addArguments(args).build().endorse().submit();
+        }
+
+        @Override
+        public byte[] evaluateTransaction(final String name) throws GatewayException {
+            return newProposal(name).build().evaluate();
+        }
+
+        @Override
+        public byte[] evaluateTransaction(final String name, final String... args) throws GatewayException {
+            return newProposal(name).addArguments(args).build().evaluate();
+        }
+
+        @Override
+        public byte[] evaluateTransaction(final String name, final byte[]... args) throws GatewayException {
+            return newProposal(name).addArguments(args).build().evaluate();
+        }
+
+        @Override
+        public Proposal.Builder newProposal(final String name) {
+            return new TimedProposalBuilder(this, name, contract.newProposal(name));
+        }
+    }
+
+    private static final class TimedProposalBuilder implements Proposal.Builder {
+
+        private final TimedContract contract;
+        private final String name;
+        private final Proposal.Builder builder;
+
+        TimedProposalBuilder(final TimedContract contract, final String name, final Proposal.Builder builder) {
+            this.contract = contract;
+            this.name = name;
+            this.builder = builder;
+        }
+
+        @Override
+        public Proposal.Builder addArguments(final byte[]... args) {
+            builder.addArguments(args);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder addArguments(final String... args) {
+            builder.addArguments(args);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder putAllTransient(final Map<String, byte[]> transientData) {
+            builder.putAllTransient(transientData);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder putTransient(final String key, final byte[] value) {
+            builder.putTransient(key, value);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder putTransient(final String key, final String value) {
+            builder.putTransient(key, value);
+            return this;
+        }
+
+        @Override
+        public Proposal.Builder setEndorsingOrganizations(final String... mspids) {
+            builder.setEndorsingOrganizations(mspids);
+            return this;
+        }
+
+        @Override
+        public Proposal build() {
+            return new TimedProposal(contract, name, builder.build());
+        }
+    }
+
+    private static final class TimedProposal implements Proposal {
+
+        private final TimedContract contract;
+        private final String name;
+        private final Proposal proposal;
+
+        TimedProposal(final TimedContract contract, final String name, final Proposal proposal) {
+            this.contract = contract;
+            this.name = name;
+            this.proposal = proposal;
+        }
+
+        @Override
+        public String getTransactionId() {
+            return proposal.getTransactionId();
+        }
+
+        @Override
+        public byte[] evaluate(final UnaryOperator<CallOptions> options) throws GatewayException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                byte[] result = proposal.evaluate(options);
+                failed = false;
+                return result;
+            } finally {
+                contract.timer.record(contract.mspId, name, Phase.EVALUATE, System.nanoTime() - start, failed);
+            }
+        }
+
+        @Override
+        public Transaction endorse(final UnaryOperator<CallOptions> options) throws EndorseException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Transaction transaction = new TimedTransaction(contract, name, proposal.endorse(options));
+                failed = false;
+                return transaction;
+            } finally {
+                contract.timer.record(contract.mspId, name, Phase.ENDORSE, System.nanoTime() - start, failed);
+            }
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return proposal.getBytes();
+        }
+
+        @Override
+        public byte[] getDigest() {
+            return proposal.getDigest();
+        }
+    }
+
+    private static final class TimedTransaction implements Transaction {
+
+        private final TimedContract contract;
+        private final String name;
+        private final Transaction transaction;
+
+        TimedTransaction(final TimedContract contract, final String name, final Transaction transaction) {
+            this.contract = contract;
+            this.name = name;
+            this.transaction = transaction;
+        }
+
+        @Override
+        public byte[] getResult() {
+            return transaction.getResult();
+        }
+
+        @Override
+        public String getTransactionId() {
+            return transaction.getTransactionId();
+        }
+
+        @Override
+        public byte[] submit(final UnaryOperator<CallOptions> options)
+                throws SubmitException, CommitStatusException, CommitException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                byte[] result = transaction.submit(options);
+                failed = false;
+                return result;
+            } finally {
+                contract.timer.record(contract.mspId, name, Phase.SUBMIT_AND_COMMIT, System.nanoTime() - start,
+                        failed);
+            }
+        }
+
+        @Override
+        public SubmittedTransaction submitAsync(final UnaryOperator<CallOptions> options) throws SubmitException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                SubmittedTransaction submitted = new TimedSubmittedTransaction(contract, name,
+                        transaction.submitAsync(options));
+                failed = false;
+                return submitted;
+            } finally {
+                contract.timer.record(contract.mspId, name, Phase.SUBMIT, System.nanoTime() - start, failed);
+            }
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return transaction.getBytes();
+        }
+
+        @Override
+        public byte[] getDigest() {
+            return transaction.getDigest();
+        }
+    }
+
+    private static final class TimedSubmittedTransaction implements SubmittedTransaction {
+
+        private final TimedContract contract;
+        private final String name;
+        private final SubmittedTransaction submitted;
+        // the status may be asked for again, the commit is only timed once
+        private final AtomicBoolean timed = new AtomicBoolean();
+
+        TimedSubmittedTransaction(final TimedContract contract, final String name,
+                                  final SubmittedTransaction submitted) {
+            this.contract = contract;
+            this.name = name;
+            this.submitted = submitted;
+        }
+
+        @Override
+        public byte[] getResult() {
+            return submitted.getResult();
+        }
+
+        @Override
+        public String getTransactionId() {
+            return submitted.getTransactionId();
+        }
+
+        @Override
+        public Status getStatus(final UnaryOperator<CallOptions> options) throws CommitStatusException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Status status = submitted.getStatus(options);
+                failed = !status.isSuccessful();
+                return status;
+            } finally {
+                if (timed.compareAndSet(false, true)) {
+                    contract.timer.record(contract.mspId, name, Phase.COMMIT, System.nanoTime() - start, failed);
+                }
+            }
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return submitted.getBytes();
+        }
+
+        @Override
+        public byte[] getDigest() {
+            return submitted.getDigest();
+        }
+    }
+}
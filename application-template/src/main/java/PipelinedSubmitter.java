@@ -0,0 +1,217 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+import org.hyperledger.fabric.client.Transaction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+
+/**
+ * Throughput mode for submitting transactions: instead of blocking on the full commit of
+ * each transaction, proposals are endorsed and sent to the orderer right away and their
+ * commit status is awaited on a separate executor.
+ * <p>
+ * At most {@code window} transactions are in flight at any time; {@link #submit} blocks
+ * the caller while the window is full, which keeps a bursty producer from flooding the
+ * orderer.
+ */
+public final class PipelinedSubmitter implements AutoCloseable {
+
+    public enum Outcome {
+        COMMITTED,
+        MVCC_CONFLICT,
+        ENDORSEMENT_FAILURE,
+        FAILED
+    }
+
+    /**
+     * What happened to one submitted transaction.
+     */
+    public static final class Result {
+
+        private final String txName;
+        private final String transactionId;
+        private final Outcome outcome;
+        private final byte[] payload;
+        private final String message;
+
+        Result(final String txName, final String transactionId, final Outcome outcome, final byte[] payload,
+               final String message) {
+            this.txName = txName;
+            this.transactionId = transactionId;
+            this.outcome = outcome;
+            this.payload = payload;
+            this.message = message;
+        }
+
+        public String getTxName() {
+            return txName;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * The transaction result returned by the endorsing peers, or null if endorsement failed.
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName() + " [txName=" + txName + ", transactionId=" + transactionId
+                    + ", outcome=" + outcome + ", message=" + message + "]";
+        }
+    }
+
+    private final int window;
+    private final Semaphore inFlight;
+    private final ExecutorService commitExecutor;
+
+    public PipelinedSubmitter(final int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        }
+        this.window = window;
+        this.inFlight = new Semaphore(window);
+        this.commitExecutor = Executors.newFixedThreadPool(Math.min(window, 64), runnable -> {
+            Thread thread = new Thread(runnable, "commit-status");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Endorses and submits the transaction on the calling thread, then completes the
+     * returned future from the commit executor once the commit status is known.
+     */
+    public CompletableFuture<Result> submit(final Contract contract, final String txName, final String... args)
+            throws InterruptedException {
+        return submit(contract, txName, result -> { }, args);
+    }
+
+    /**
+     * Same as {@link #submit(Contract, String, String...)}, with a listener that is called
+     * with the result before the transaction leaves the window, so {@link #drain()} also
+     * waits for the listeners. An exception thrown by the listener is logged, the returned
+     * future still completes with the result.
+     */
+    public CompletableFuture<Result> submit(final Contract contract, final String txName,
+                                            final Consumer<Result> listener, final String... args)
+            throws InterruptedException {
+        inFlight.acquire();
+
+        Transaction transaction;
+        try {
+            transaction = contract.newProposal(txName)
+                    .addArguments(args)
+                    .build()
+                    .endorse();
+        } catch (EndorseException e) {
+            return completeNow(listener,
+                    new Result(txName, e.getTransactionId(), Outcome.ENDORSEMENT_FAILURE, null, e.getMessage()));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+
+        SubmittedTransaction submitted;
+        try {
+            submitted = transaction.submitAsync();
+        } catch (SubmitException e) {
+            return completeNow(listener,
+                    new Result(txName, e.getTransactionId(), Outcome.FAILED, null, e.getMessage()));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            Result result = awaitCommit(txName, submitted);
+            notifyListener(listener, result);
+            return result;
+        }, commitExecutor).whenComplete((result, error) -> inFlight.release());
+    }
+
+    private CompletableFuture<Result> completeNow(final Consumer<Result> listener, final Result result) {
+        try {
+            notifyListener(listener, result);
+        } finally {
+            inFlight.release();
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    // callers rarely look at the returned futures, so a failing listener is reported here
+    // instead of completing them exceptionally
+    private static void notifyListener(final Consumer<Result> listener, final Result result) {
+        try {
+            listener.accept(result);
+        } catch (RuntimeException e) {
+            System.out.println("Listener failed on " + result + ": " + e);
+        }
+    }
+
+    private static Result awaitCommit(final String txName, final SubmittedTransaction submitted) {
+        try {
+            Status status = submitted.getStatus();
+            return new Result(txName, status.getTransactionId(), classify(status.getCode()), submitted.getResult(),
+                    status.getCode().name());
+        } catch (CommitStatusException e) {
+            return new Result(txName, submitted.getTransactionId(), Outcome.FAILED, submitted.getResult(),
+                    e.getMessage());
+        }
+    }
+
+    static Outcome classify(final TxValidationCode code) {
+        switch (code) {
+            case VALID:
+                return Outcome.COMMITTED;
+            case MVCC_READ_CONFLICT:
+            case PHANTOM_READ_CONFLICT:
+                return Outcome.MVCC_CONFLICT;
+            case ENDORSEMENT_POLICY_FAILURE:
+                return Outcome.ENDORSEMENT_FAILURE;
+            default:
+                return Outcome.FAILED;
+        }
+    }
+
+    /**
+     * Blocks until every transaction submitted so far has a commit status.
+     */
+    public void drain() throws InterruptedException {
+        inFlight.acquire(window);
+        inFlight.release(window);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        drain();
+        commitExecutor.shutdown();
+        commitExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.samples.warmup.InMemoryChaincodeStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.owlike.genson.Genson;
+
+/**
+ * Throughput of the {@link BasilContract} transactions against an {@link InMemoryChaincodeStub}
+ * holding 1K, 100K or 1M plants. Every operation is a full transaction as the shim runs it:
+ * the context from {@link BasilContract#createContext} (including the client identity
+ * parsing and the metered stub), the contract call between the before and after hooks that
+ * record {@link BasilMetrics}, and the commit of its write set.
+ * <p>
+ * Run with {@code ./gradlew jmh}; the {@code gc} profiler reports allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BasilContractBenchmark {
+
+    private static final String ORG1 = "Org1MSP";
+    private static final String ORG2 = "Org2MSP";
+
+    // A small owner, so listing all of its plants does not depend on the ledger size
+    private static final String SMALL_OWNER = "Org3MSP";
+    private static final int SMALL_OWNER_PLANTS = 100;
+
+    private static final String HOT_PLANT = "hot-plant";
+    private static final int HOT_PLANT_UPDATES = 1000;
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int plants;
+
+    private final Genson genson = new Genson();
+
+    private BasilContract contract;
+    private InMemoryChaincodeStub stub;
+
+    // Current owner of each plant, so transfers are always made by the owner
+    private boolean[] ownedByOrg1;
+    private long created;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        contract = new BasilContract();
+        stub = new InMemoryChaincodeStub();
+        ownedByOrg1 = new boolean[plants];
+
+        List<BasilLeg> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+        for (int i = 0; i < plants; i++) {
+            String owner = i < SMALL_OWNER_PLANTS ? SMALL_OWNER : ORG1;
+            ownedByOrg1[i] = owner.equals(ORG1);
+            batch.add(leg(qr(i), owner));
+            if (batch.size() == LOAD_BATCH_SIZE || i == plants - 1) {
+                loadBatch(batch);
+                batch.clear();
+            }
+        }
+
+        batch.add(leg(HOT_PLANT, ORG1));
+        loadBatch(batch);
+        for (int i = 0; i < HOT_PLANT_UPDATES; i++) {
+            String basilLegJSON = genson.serialize(leg(HOT_PLANT, ORG1));
+            stub.beginTransaction(ORG1, "UpdatePlant", basilLegJSON);
+            invoke(ctx -> contract.UpdatePlant(ctx, basilLegJSON));
+            stub.commitTransaction();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T apply(Context ctx) throws Exception;
+    }
+
+    private <T> T invoke(final Call<T> call) throws Exception {
+        Context ctx = contract.createContext(stub);
+        contract.beforeTransaction(ctx);
+        T result = call.apply(ctx);
+        contract.afterTransaction(ctx, result);
+        return result;
+    }
+
+    private void loadBatch(final List<BasilLeg> batch) throws Exception {
+        String basilLegArrayJSON = genson.serialize(batch);
+        stub.beginTransaction(ORG1, "CreatePlants", basilLegArrayJSON);
+        invoke(ctx -> contract.CreatePlants(ctx, basilLegArrayJSON));
+        stub.commitTransaction();
+    }
+
+    private static String qr(final int i) {
+        return "basil-" + i;
+    }
+
+    private static BasilLeg leg(final String qr, final String owner) {
+        return new BasilLeg(System.currentTimeMillis(), new GpsPosition(45.4642, 9.19), new Basil(qr, "greenhouse 5", owner));
+    }
+
+    private int randomPlant() {
+        return SMALL_OWNER_PLANTS + ThreadLocalRandom.current().nextInt(plants - SMALL_OWNER_PLANTS);
+    }
+
+    @Benchmark
+    public BasilLeg createPlant() throws Exception {
+        String basilLegJSON = genson.serialize(leg("new-" + (created++), ORG1));
+        stub.beginTransaction(ORG1, "CreatePlant", basilLegJSON);
+        BasilLeg result = invoke(ctx -> contract.CreatePlant(ctx, basilLegJSON));
+        stub.commitTransaction();
+        return result;
+    }
+
+    @Benchmark
+    public BasilLeg updatePlant() throws Exception {
+        int i = randomPlant();
+        String owner = ownedByOrg1[i] ? ORG1 : ORG2;
+        String basilLegJSON = genson.serialize(leg(qr(i), owner));
+        stub.beginTransaction(owner, "UpdatePlant", basilLegJSON);
+        BasilLeg result = invoke(ctx -> contract.UpdatePlant(ctx, basilLegJSON));
+        stub.commitTransaction();
+        return result;
+    }
+
+    @Benchmark
+    public Basil transferOwnership() throws Exception {
+        int i = randomPlant();
+        String owner = ownedByOrg1[i] ? ORG1 : ORG2;
+        String buyer = ownedByOrg1[i] ? ORG2 : ORG1;
+        stub.beginTransaction(owner, "TransferOwnership", qr(i), buyer);
+        Basil result = invoke(ctx -> contract.TransferOwnership(ctx, qr(i), buyer));
+        stub.commitTransaction();
+        ownedByOrg1[i] = !ownedByOrg1[i];
+        return result;
+    }
+
+    @Benchmark
+    public String getBasilByOwner() throws Exception {
+        stub.beginTransaction(SMALL_OWNER, "GetBasilByOwner", SMALL_OWNER);
+        return invoke(ctx -> contract.GetBasilByOwner(ctx, SMALL_OWNER));
+    }
+
+    @Benchmark
+    public String getBasilByOwnerPage() throws Exception {
+        stub.beginTransaction(ORG1, "GetBasilByOwnerWithPagination", ORG1, "100", "");
+        return invoke(ctx -> contract.GetBasilByOwnerWithPagination(ctx, ORG1, 100, ""));
+    }
+
+    @Benchmark
+    public String historyPlant() throws Exception {
+        stub.beginTransaction(ORG1, "HistoryPlant", HOT_PLANT);
+        return invoke(ctx -> contract.HistoryPlant(ctx, HOT_PLANT));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Outcome of a single item of a batch transaction: the plant QR code and either
+ * {@link #OK} or the name of the error that made the item fail.
+ */
+@DataType()
+public final class BasilBatchResult {
+
+    public static final String OK = "OK";
+
+    @Property()
+    private String qr;
+
+    @Property()
+    private String status;
+
+    public void setQr(String qr) {
+        this.qr = qr;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getQr() {
+        return qr;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public BasilBatchResult(@JsonProperty("qr") final String qr, @JsonProperty("status") final String status) {
+        this.qr = qr;
+        this.status = status;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilBatchResult other = (BasilBatchResult) obj;
+
+        return Objects.deepEquals(
+                new String[]{getQr(), getStatus()},
+                new String[]{other.getQr(), other.getStatus()});
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getQr(), getStatus());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [qr=" + qr + ", status="
+                + status + "]";
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.hyperledger.fabric.contract.ContractRouter;
+import org.hyperledger.fabric.samples.warmup.BasilWarmUp;
+import org.hyperledger.fabric.shim.ChaincodeServer;
+import org.hyperledger.fabric.shim.ChaincodeServerProperties;
+import org.hyperledger.fabric.shim.NettyChaincodeServer;
+
+/**
+ * Runs the contract as a chaincode service: instead of being launched by the peer, the
+ * chaincode listens on CHAINCODE_SERVER_ADDRESS and the peer connects to it, so it can be
+ * started, scaled and kept warm independently of chaincode upgrades. Without
+ * CHAINCODE_SERVER_ADDRESS it starts as peer-launched chaincode, so the same jar serves
+ * both.
+ * <p>
+ * The chaincode ID is taken from CORE_CHAINCODE_ID_NAME, or from CHAINCODE_ID as set by
+ * the external builders. TLS is configured as for the shim (CORE_PEER_TLS_ENABLED,
+ * CORE_TLS_CLIENT_KEY_FILE, CORE_TLS_CLIENT_CERT_FILE). The CHAINCODE_* variables below
+ * tune the gRPC server and the pool transactions are executed on; the shim's own defaults
+ * apply to those left unset.
+ * <p>
+ * With BASIL_WARMUP_ROUNDS set, every transaction is first run that many times against an
+ * in-memory ledger (see {@link BasilWarmUp}), so the first transactions the peer sends after
+ * an upgrade do not pay for class loading and compilation.
+ * <p>
+ * BASIL_METRICS_ADDRESS and BASIL_METRICS_LOG_INTERVAL_S export the {@link BasilMetrics}
+ * of the transactions.
+ */
+public final class BasilChaincodeServer {
+
+    // Pool the transactions are executed on: environment variable to shim property
+    private static final Map<String, String> POOL_SETTINGS = Map.of(
+            "CHAINCODE_CORE_POOL_SIZE", "TP_CORE_POOL_SIZE",
+            "CHAINCODE_MAX_POOL_SIZE", "TP_MAX_POOL_SIZE",
+            "CHAINCODE_QUEUE_SIZE", "TP_QUEUE_SIZE",
+            "CHAINCODE_POOL_KEEP_ALIVE_MS", "TP_KEEP_ALIVE_MS");
+
+    private BasilChaincodeServer() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Map<String, String> env = System.getenv();
+        int warmUpRounds = Integer.parseInt(env.getOrDefault("BASIL_WARMUP_ROUNDS", "0").trim());
+        BasilMetrics.exportFromEnvironment();
+
+        if (!env.containsKey("CHAINCODE_SERVER_ADDRESS")) {
+            // launched by the peer, which starts its own router: warm up a throwaway one
+            if (warmUpRounds > 0) {
+                ContractRouter warmUpRouter = new ContractRouter(args);
+                BasilWarmUp warmUp = new BasilWarmUp(warmUpRouter);
+                warmUpRouter.startRouterWithChaincodeServer(warmUp.before(null, warmUpRounds));
+            }
+            ContractRouter.main(args);
+            return;
+        }
+
+        String[] routerArgs = args;
+        if (!env.containsKey("CORE_CHAINCODE_ID_NAME") && env.containsKey("CHAINCODE_ID")) {
+            routerArgs = new String[]{"--id", env.get("CHAINCODE_ID")};
+        }
+        ContractRouter router = new ContractRouter(routerArgs);
+
+        // The shim reads its pool settings from these properties when the first peer connects
+        Properties config = router.getChaincodeConfig();
+        for (Map.Entry<String, String> setting : POOL_SETTINGS.entrySet()) {
+            if (env.containsKey(setting.getKey())) {
+                config.setProperty(setting.getValue(), Integer.toString(intSetting(env, setting.getKey())));
+            }
+        }
+
+        ChaincodeServerProperties properties = serverProperties(router.getChaincodeServerConfig(), env);
+        System.out.println("Starting chaincode server on " + properties.getServerAddress() + ", pool "
+                + config.getProperty("TP_CORE_POOL_SIZE", "5") + "-" + config.getProperty("TP_MAX_POOL_SIZE", "5")
+                + ", queue " + config.getProperty("TP_QUEUE_SIZE", "5000"));
+
+        ChaincodeServer server = new NettyChaincodeServer(router, properties);
+        if (warmUpRounds > 0) {
+            server = new BasilWarmUp(router).before(server, warmUpRounds);
+        }
+        router.startRouterWithChaincodeServer(server);
+    }
+
+    /**
+     * Applies the CHAINCODE_* gRPC settings found in the environment to the server
+     * properties the shim derived from it.
+     */
+    static ChaincodeServerProperties serverProperties(final ChaincodeServerProperties properties,
+                                                      final Map<String, String> env) {
+        if (env.containsKey("CHAINCODE_MAX_INBOUND_MESSAGE_SIZE")) {
+            properties.setMaxInboundMessageSize(intSetting(env, "CHAINCODE_MAX_INBOUND_MESSAGE_SIZE"));
+        }
+        if (env.containsKey("CHAINCODE_MAX_INBOUND_METADATA_SIZE")) {
+            properties.setMaxInboundMetadataSize(intSetting(env, "CHAINCODE_MAX_INBOUND_METADATA_SIZE"));
+        }
+        if (env.containsKey("CHAINCODE_MAX_CONNECTION_AGE_SECONDS")) {
+            properties.setMaxConnectionAgeSeconds(intSetting(env, "CHAINCODE_MAX_CONNECTION_AGE_SECONDS"));
+        }
+        if (env.containsKey("CHAINCODE_KEEPALIVE_TIME_MINUTES")) {
+            properties.setKeepAliveTimeMinutes(intSetting(env, "CHAINCODE_KEEPALIVE_TIME_MINUTES"));
+        }
+        if (env.containsKey("CHAINCODE_KEEPALIVE_TIMEOUT_SECONDS")) {
+            properties.setKeepAliveTimeoutSeconds(intSetting(env, "CHAINCODE_KEEPALIVE_TIMEOUT_SECONDS"));
+        }
+        if (env.containsKey("CHAINCODE_PERMIT_KEEPALIVE_TIME_MINUTES")) {
+            properties.setPermitKeepAliveTimeMinutes(intSetting(env, "CHAINCODE_PERMIT_KEEPALIVE_TIME_MINUTES"));
+        }
+        if (env.containsKey("CHAINCODE_PERMIT_KEEPALIVE_WITHOUT_CALLS")) {
+            properties.setPermitKeepAliveWithoutCalls(
+                    Boolean.parseBoolean(env.get("CHAINCODE_PERMIT_KEEPALIVE_WITHOUT_CALLS").trim()));
+        }
+        properties.validate();
+        return properties;
+    }
+
+    private static int intSetting(final Map<String, String> env, final String name) {
+        int value;
+        try {
+            value = Integer.parseInt(env.get(name).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number: " + env.get(name), e);
+        }
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+}
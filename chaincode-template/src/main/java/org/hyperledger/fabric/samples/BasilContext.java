@@ -0,0 +1,75 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Transaction context of {@link BasilContract}. Its stub counts what the transaction reads
+ * and writes, and {@link #finish(Object)} adds that and the time since {@link #start()} to
+ * the {@link BasilMetrics} of the transaction's function.
+ * <p>
+ * The shim does not call back when a function throws, so a failure the contract raises is
+ * recorded by {@link #failCurrent()} before it is thrown. A transaction that ends with any
+ * other exception is counted as failed, without its latency, when the next transaction
+ * starts on the same thread.
+ */
+public final class BasilContext extends Context {
+
+    // the started transaction of this thread that is not recorded yet
+    private static final ThreadLocal<BasilContext> CURRENT = new ThreadLocal<>();
+
+    private final MeteredChaincodeStub meteredStub;
+
+    private final String function;
+
+    private long startNanos;
+
+    public BasilContext(final ChaincodeStub stub) {
+        this(new MeteredChaincodeStub(stub));
+    }
+
+    private BasilContext(final MeteredChaincodeStub meteredStub) {
+        super(meteredStub);
+        this.meteredStub = meteredStub;
+        this.function = meteredStub.getFunction();
+        this.startNanos = System.nanoTime();
+    }
+
+    public void start() {
+        BasilContext unfinished = CURRENT.get();
+        if (unfinished != null) {
+            CURRENT.remove();
+            BasilMetrics.get().recordFailure(unfinished.function, unfinished.meteredStub);
+        }
+        startNanos = System.nanoTime();
+        CURRENT.set(this);
+    }
+
+    /**
+     * Records the transaction, whose function returned the given result.
+     */
+    public void finish(final Object result) {
+        long elapsed = System.nanoTime() - startNanos;
+        CURRENT.remove();
+        // String results are mostly ASCII JSON, where characters and bytes are the same
+        long responseChars = result instanceof String ? ((String) result).length() : 0;
+        BasilMetrics.get().record(function, elapsed, meteredStub, responseChars, false);
+    }
+
+    /**
+     * Records the transaction running on this thread as failed, if there is one; the
+     * function is about to throw.
+     */
+    public static void failCurrent() {
+        BasilContext current = CURRENT.get();
+        if (current != null) {
+            long elapsed = System.nanoTime() - current.startNanos;
+            CURRENT.remove();
+            BasilMetrics.get().record(current.function, elapsed, current.meteredStub, 0, true);
+        }
+    }
+}
@@ -4,9 +4,18 @@
 
 package org.hyperledger.fabric.samples;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import org.hyperledger.fabric.contract.Context;
 import org.hyperledger.fabric.contract.ContractInterface;
@@ -16,13 +25,18 @@ import org.hyperledger.fabric.contract.annotation.Default;
 import org.hyperledger.fabric.contract.annotation.Info;
 import org.hyperledger.fabric.contract.annotation.License;
 import org.hyperledger.fabric.contract.annotation.Transaction;
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
 import org.hyperledger.fabric.shim.ChaincodeStub;
 import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
 import org.hyperledger.fabric.shim.ledger.KeyModification;
 import org.hyperledger.fabric.shim.ledger.KeyValue;
 import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
 
 import com.owlike.genson.Genson;
+import com.owlike.genson.GensonBuilder;
+import com.owlike.genson.JsonBindingException;
 
 @Contract(
         name = "basic",
@@ -41,77 +55,430 @@ import com.owlike.genson.Genson;
 public final class BasilContract implements ContractInterface {
 
 
-    private final Genson genson = new Genson();
+    private final Genson genson = new GensonBuilder().withConverters(new GpsPositionConverter()).create();
+
+    private final BasilLegCodec codec = BasilLegCodec.fromEnvironment(genson);
+
+    // Composite-key index of the plants of each owner. Owner queries are answered from it, so
+    // they work on LevelDB as well as CouchDB and are re-checked when the block is validated.
+    private static final String OWNER_INDEX = "owner~qr";
+
+    // Plant counters of each owner, split over OWNER_STATS_SHARDS keys. A transaction updates
+    // the shard picked by its ID, so concurrent creations for the same owner only conflict
+    // when they pick the same shard, and reads fold the shards of the owner.
+    private static final String OWNER_STATS = "stats~owner~shard";
+
+    private static final int OWNER_STATS_SHARDS = 16;
+
+    // Value of index entries: the key carries the data, but an empty value would delete it
+    private static final byte[] INDEX_VALUE = new byte[]{0};
+
+    // Chaincode event set by every transaction that changes plants. A transaction carries at
+    // most one event, so its payload is the JSON array of the BasilEvents it made.
+    private static final String CHANGE_EVENT = "BasilChanged";
+
+    // GPS fixes recorded by RecordPosition, one key per plant and time bucket. The bucket is
+    // inverted so that a scan of a plant's positions returns the latest bucket first.
+    private static final String POSITION_KEY = "pos~qr~bucket";
+
+    private static final long POSITION_BUCKET_MS = 60_000L;
+
+    // Geohash index of the plants, with one attribute per character of the geohash so that a
+    // partial-key scan on the first n characters returns every plant in that cell.
+    private static final String GEO_INDEX = "geo~cell~qr";
+
+    // The cells each plant is indexed under, so its entries can be found and removed
+    private static final String GEO_CELLS = "geocell~qr~cell";
+
+    // Geohash characters indexed, 7 is a cell of about 150 x 150 m
+    private static final int GEO_PRECISION = 7;
+
+    // Most cells scanned to answer a bounding-box query, see Geohash.cover
+    private static final int MAX_COVER_CELLS = 32;
+
+    // Most plants moved by one TransferOwnershipBatch. Each plant adds a read and three writes
+    // (plant and owner index entries) to the read/write set, which must fit in a block. Peers
+    // with different bounds would endorse a batch near the bound differently, so set it alike.
+    private static final int MAX_TRANSFER_BATCH = maxTransferBatch(System.getenv());
 
     private enum BasilErrors {
         BASIL_NOT_FOUND,
         BASIL_ALREADY_EXISTS,
-        NOT_YOUR_BASIL
+        NOT_YOUR_BASIL,
+        INVALID_ARGUMENT
+    }
+
+    /**
+     * Gives each transaction a {@link BasilContext}, whose stub counts its state accesses for
+     * {@link BasilMetrics}.
+     */
+    @Override
+    public Context createContext(final ChaincodeStub stub) {
+        return new BasilContext(stub);
+    }
+
+    @Override
+    public void beforeTransaction(final Context ctx) {
+        ((BasilContext) ctx).start();
+    }
+
+    @Override
+    public void afterTransaction(final Context ctx, final Object result) {
+        ((BasilContext) ctx).finish(result);
+    }
+
+    // the shim does not call afterTransaction for a function that throws, so the contract
+    // records its own failures before throwing them
+    private static ChaincodeException failure(final String errorMessage, final BasilErrors error) {
+        BasilContext.failCurrent();
+        return new ChaincodeException(errorMessage, error.toString());
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public String GetBasilByOwner(final Context ctx, String owner) {
+    public String GetBasilByOwner(final Context ctx, String owner) throws Exception {
         ChaincodeStub stub = ctx.getStub();
 
         List<BasilLeg> queryResults = new ArrayList<BasilLeg>();
-        String queryString = String.format("{\"selector\":{\"basil\":{\"owner\":\"%s\"}}}", owner);
-
-        QueryResultsIterator<KeyValue> results = stub.getQueryResult(queryString);
 
-        for (KeyValue result : results) {
-            BasilLeg basilLeg = genson.deserialize(result.getStringValue(), BasilLeg.class);
-            queryResults.add(basilLeg);
+        try (QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(OWNER_INDEX, owner)) {
+            addIndexedBasilLegs(stub, results, queryResults);
         }
 
         final String response = genson.serialize(queryResults);
         return response;
     }
 
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetBasilByOwnerWithPagination(final Context ctx, final String owner, final int pageSize,
+                                                final String bookmark) throws Exception {
+        if (pageSize <= 0) {
+            String errorMessage = String.format("Invalid page size %d", pageSize);
+            System.out.println(errorMessage);
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+        }
+
+        ChaincodeStub stub = ctx.getStub();
+
+        List<BasilLeg> queryResults = new ArrayList<BasilLeg>();
+        CompositeKey ownerKey = new CompositeKey(OWNER_INDEX, owner);
+
+        try (QueryResultsIteratorWithMetadata<KeyValue> results =
+                     stub.getStateByPartialCompositeKeyWithPagination(ownerKey, pageSize, bookmark)) {
+
+            addIndexedBasilLegs(stub, results, queryResults);
+
+            QueryResponseMetadata metadata = results.getMetadata();
+            BasilLegPage page = new BasilLegPage(queryResults, metadata.getBookmark(), metadata.getFetchedRecordsCount());
+
+            final String response = genson.serialize(page);
+            return response;
+        }
+    }
+
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public String HistoryPlant(final Context ctx, final String qr) throws Exception {
 
         ChaincodeStub stub = ctx.getStub();
 
         List<BasilLeg> queryResults = new ArrayList<BasilLeg>();
-        QueryResultsIterator<KeyModification> historyForKey = stub.getHistoryForKey(qr);
 
-        for (KeyModification keyModification : historyForKey) {
-            BasilLeg basilLeg = genson.deserialize(keyModification.getStringValue(), BasilLeg.class);
-            queryResults.add(basilLeg);
+        try (QueryResultsIterator<KeyModification> historyForKey = stub.getHistoryForKey(qr)) {
+            for (KeyModification keyModification : historyForKey) {
+                // a delete leaves an empty value behind, there is no leg to return for it
+                if (!keyModification.isDeleted()) {
+                    queryResults.add(codec.decode(keyModification.getValue()));
+                }
+            }
+        }
+        final String response = genson.serialize(queryResults);
+
+        return response;
+    }
+
+    /**
+     * Returns at most {@code limit} modifications of the plant whose transaction timestamp
+     * (epoch milliseconds) lies in [fromTs, toTs], deletes included. The peer returns history
+     * newest first, so the iteration stops as soon as it walks past fromTs or the limit.
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String HistoryPlantRange(final Context ctx, final String qr, final long fromTs, final long toTs,
+                                    final int limit) throws Exception {
+
+        if (limit <= 0) {
+            String errorMessage = String.format("Invalid history limit %d", limit);
+            System.out.println(errorMessage);
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+        }
+
+        ChaincodeStub stub = ctx.getStub();
+        List<BasilHistoryEntry> queryResults = new ArrayList<BasilHistoryEntry>();
+
+        try (QueryResultsIterator<KeyModification> historyForKey = stub.getHistoryForKey(qr)) {
+            for (KeyModification keyModification : historyForKey) {
+                long timestamp = keyModification.getTimestamp().toEpochMilli();
+                if (timestamp > toTs) {
+                    continue;
+                }
+                if (timestamp < fromTs) {
+                    break;
+                }
+
+                boolean deleted = keyModification.isDeleted();
+                BasilLeg basilLeg = deleted ? null : codec.decode(keyModification.getValue());
+                queryResults.add(new BasilHistoryEntry(keyModification.getTxId(), timestamp, deleted, basilLeg));
+
+                if (queryResults.size() >= limit) {
+                    break;
+                }
+            }
         }
-        //retrieving the time
-        ctx.getStub().getTxTimestamp().getEpochSecond();
         final String response = genson.serialize(queryResults);
 
         return response;
     }
 
+    /**
+     * Returns a page of the plants whose QR code lies in [startKey, endKey), in key order,
+     * for exports of the whole state; an empty key leaves that end of the range open. Index,
+     * position and counter entries are composite keys, which range queries never return.
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ExportPlants(final Context ctx, final String startKey, final String endKey, final int pageSize,
+                               final String bookmark) throws Exception {
+
+        if (pageSize <= 0) {
+            String errorMessage = String.format("Invalid page size %d", pageSize);
+            System.out.println(errorMessage);
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+        }
+
+        ChaincodeStub stub = ctx.getStub();
+        List<BasilLeg> queryResults = new ArrayList<BasilLeg>();
+
+        try (QueryResultsIteratorWithMetadata<KeyValue> results =
+                     stub.getStateByRangeWithPagination(startKey, endKey, pageSize, bookmark)) {
+
+            for (KeyValue result : results) {
+                BasilLeg basilLeg = codec.decode(result.getValue());
+                if (basilLeg != null) {
+                    queryResults.add(withLatestPosition(stub, basilLeg));
+                }
+            }
+
+            QueryResponseMetadata metadata = results.getMetadata();
+            BasilLegPage page = new BasilLegPage(queryResults, metadata.getBookmark(), metadata.getFetchedRecordsCount());
+
+            final String response = genson.serialize(page);
+            return response;
+        }
+    }
+
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean CheckBasil(final Context ctx, final String qr) {
 
         ChaincodeStub stub = ctx.getStub();
 
-        String basilJSONSerialized = stub.getStringState(qr);
-        return basilJSONSerialized != null && !basilJSONSerialized.isEmpty();
+        byte[] basilLegSerialized = stub.getState(qr);
+        return basilLegSerialized != null && basilLegSerialized.length > 0;
+    }
+
+    /**
+     * Adds the owner index entry of every plant in [startKey, endKey), for plants written
+     * before the index existed. Run it over small key ranges to keep the write set bounded.
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public int RebuildOwnerIndex(final Context ctx, final String startKey, final String endKey) throws Exception {
+
+        ChaincodeStub stub = ctx.getStub();
+        int indexed = 0;
+
+        try (QueryResultsIterator<KeyValue> results = stub.getStateByRange(startKey, endKey)) {
+            for (KeyValue result : results) {
+                BasilLeg basilLeg = codec.decode(result.getValue());
+                putOwnerIndex(stub, basilLeg.getBasil().getOwner(), result.getKey());
+                indexed++;
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Returns the number of plants of the owner, folded from the shards of its counters
+     * without reading any plant.
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public OwnerStats GetOwnerStats(final Context ctx, final String owner) throws Exception {
+
+        ChaincodeStub stub = ctx.getStub();
+        OwnerStats ownerStats = new OwnerStats(owner, 0, 0);
+
+        try (QueryResultsIterator<KeyValue> shards = stub.getStateByPartialCompositeKey(OWNER_STATS, owner)) {
+            for (KeyValue shard : shards) {
+                OwnerStats shardStats = genson.deserialize(shard.getValue(), OwnerStats.class);
+                ownerStats.setPlantCount(ownerStats.getPlantCount() + shardStats.getPlantCount());
+                ownerStats.setLastUpdate(Math.max(ownerStats.getLastUpdate(), shardStats.getLastUpdate()));
+            }
+        }
+        return ownerStats;
+    }
+
+    /**
+     * Recounts the plants of the owner from the owner index and resets its counters to that
+     * count, for owners whose plants were written before the counters existed. It reads
+     * every plant of the owner, so run it once per owner rather than routinely.
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public OwnerStats RebuildOwnerStats(final Context ctx, final String owner) throws Exception {
+
+        ChaincodeStub stub = ctx.getStub();
+        long plantCount = 0;
+
+        try (QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(OWNER_INDEX, owner)) {
+            for (KeyValue ignored : results) {
+                plantCount++;
+            }
+        }
+        try (QueryResultsIterator<KeyValue> shards = stub.getStateByPartialCompositeKey(OWNER_STATS, owner)) {
+            for (KeyValue shard : shards) {
+                stub.delState(shard.getKey());
+            }
+        }
+
+        OwnerStats ownerStats = new OwnerStats(owner, plantCount, stub.getTxTimestamp().toEpochMilli());
+        stub.putState(stub.createCompositeKey(OWNER_STATS, owner, ownerStatsShard(stub)).toString(),
+                genson.serialize(ownerStats).getBytes(StandardCharsets.UTF_8));
+        return ownerStats;
+    }
+
+    /**
+     * Adds the geohash index entries of every plant in [startKey, endKey), for plants written
+     * before the index existed. Each plant is indexed at the position reads return, which
+     * may be a fix recorded before the index existed, so the fixes of every plant in the
+     * range are read: a RecordPosition of any of them committed meanwhile invalidates the
+     * rebuild with a phantom read conflict. It is a one-off migration, so that is accepted;
+     * run it over small key ranges, and submit a range again if it was invalidated.
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public int RebuildGeoIndex(final Context ctx, final String startKey, final String endKey) throws Exception {
+
+        ChaincodeStub stub = ctx.getStub();
+        int indexed = 0;
+
+        try (QueryResultsIterator<KeyValue> results = stub.getStateByRange(startKey, endKey)) {
+            for (KeyValue result : results) {
+                BasilLeg basilLeg = withLatestPosition(stub, codec.decode(result.getValue()));
+                if (basilLeg.getGpsPosition() != null) {
+                    putGeoIndex(stub, result.getKey(), basilLeg.getGpsPosition());
+                    indexed++;
+                }
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Returns a page of the plants whose current position lies in the box. The box is
+     * covered with geohash cells (see {@link Geohash#cover}) and the index is scanned cell by
+     * cell, so the bookmark is the index of the current cell and the bookmark within it.
+     * Index entries are filtered against the actual position of the plant, so a page may
+     * hold fewer than {@code pageSize} plants even when more follow; the page is the last
+     * one when its bookmark is empty. Boxes crossing the antimeridian are not supported.
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetPlantsInBoundingBox(final Context ctx, final double minLat, final double minLon,
+                                         final double maxLat, final double maxLon, final int pageSize,
+                                         final String bookmark) throws Exception {
+
+        if (pageSize <= 0 || minLat > maxLat || minLon > maxLon
+                || !new GpsPosition(minLat, minLon).inRange() || !new GpsPosition(maxLat, maxLon).inRange()) {
+            String errorMessage = String.format("Invalid bounding box [%f, %f, %f, %f] or page size %d",
+                    minLat, minLon, maxLat, maxLon, pageSize);
+            System.out.println(errorMessage);
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+        }
+
+        ChaincodeStub stub = ctx.getStub();
+        List<String> cells = Geohash.cover(minLat, minLon, maxLat, maxLon, GEO_PRECISION, MAX_COVER_CELLS);
+
+        int cell = 0;
+        String cellBookmark = "";
+        if (bookmark != null && !bookmark.isEmpty()) {
+            int separator = bookmark.indexOf(':');
+            try {
+                cell = separator < 0 ? -1 : Integer.parseInt(bookmark.substring(0, separator));
+            } catch (NumberFormatException e) {
+                cell = -1;
+            }
+            if (cell < 0 || cell >= cells.size()) {
+                String errorMessage = String.format("Invalid bookmark %s", bookmark);
+                System.out.println(errorMessage);
+                throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+            }
+            cellBookmark = bookmark.substring(separator + 1);
+        }
+
+        List<BasilLeg> queryResults = new ArrayList<BasilLeg>();
+        int fetched = 0;
+
+        while (cell < cells.size() && fetched < pageSize) {
+            int requested = pageSize - fetched;
+            CompositeKey cellKey = new CompositeKey(GEO_INDEX, geohashAttributes(cells.get(cell)));
+
+            try (QueryResultsIteratorWithMetadata<KeyValue> results =
+                         stub.getStateByPartialCompositeKeyWithPagination(cellKey, requested, cellBookmark)) {
+
+                for (KeyValue indexEntry : results) {
+                    List<String> attributes = stub.splitCompositeKey(indexEntry.getKey()).getAttributes();
+                    String qr = attributes.get(GEO_PRECISION);
+                    BasilLeg basilLeg = readBasilLeg(stub, qr);
+
+                    // skip entries of positions the plant has since left
+                    if (basilLeg != null && isIndexedAt(withLatestPosition(stub, basilLeg), attributes)
+                            && isInBox(basilLeg.getGpsPosition(), minLat, minLon, maxLat, maxLon)) {
+                        queryResults.add(basilLeg);
+                    }
+                }
+
+                QueryResponseMetadata metadata = results.getMetadata();
+                fetched += metadata.getFetchedRecordsCount();
+                if (metadata.getFetchedRecordsCount() < requested || metadata.getBookmark().isEmpty()) {
+                    cell++;
+                    cellBookmark = "";
+                } else {
+                    cellBookmark = metadata.getBookmark();
+                }
+            }
+        }
+
+        String nextBookmark = cell < cells.size() ? cell + ":" + cellBookmark : "";
+        BasilLegPage page = new BasilLegPage(queryResults, nextBookmark, fetched);
+
+        final String response = genson.serialize(page);
+        return response;
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public BasilLeg CreatePlant(final Context ctx, final String basilLegJSON) throws Exception {
 
         ChaincodeStub stub = ctx.getStub();
-        String ownerOrg = ctx.getClientIdentity().getMSPID();
 
-        BasilLeg basilLeg = genson.deserialize(basilLegJSON, BasilLeg.class);
+        BasilLeg basilLeg = parseBasilLeg(basilLegJSON);
         Basil basil = basilLeg.getBasil();
+        checkPosition(basilLeg);
 
         if (CheckBasil(ctx, basil.getQr())) {
             String errorMessage = String.format("Basil %s already exists", basil.getQr());
             System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, BasilErrors.BASIL_ALREADY_EXISTS.toString());
+            throw failure(errorMessage, BasilErrors.BASIL_ALREADY_EXISTS);
         }
 
-        String basilJSONSerialized = genson.serialize(basilLeg);
-        stub.putStringState(basil.getQr(), basilJSONSerialized);
+        // encoded from the parsed leg, so unknown fields and legacy shapes of the request are
+        // not stored as they were sent
+        stub.putState(basil.getQr(), codec.encode(basilLeg));
+        putOwnerIndex(stub, basil.getOwner(), basil.getQr());
+        putGeoIndex(stub, basil.getQr(), basilLeg.getGpsPosition());
+        addToOwnerStats(stub, Collections.singletonMap(basil.getOwner(), 1L));
+        emitEvents(stub, Collections.singletonList(BasilEvent.of(BasilEvent.CREATED, basilLeg)));
 
         return basilLeg;
     }
@@ -121,52 +488,192 @@ public final class BasilContract implements ContractInterface {
     public BasilLeg UpdatePlant(final Context ctx, final String basilLegJSON) throws Exception {
 
         ChaincodeStub stub = ctx.getStub();
-        BasilLeg basilLeg = genson.deserialize(basilLegJSON, BasilLeg.class);
+        BasilLeg basilLeg = parseBasilLeg(basilLegJSON);
         Basil basil = basilLeg.getBasil();
+        checkPosition(basilLeg);
 
-        if (!CheckBasil(ctx, basil.getQr())) {
-            String errorMessage = String.format("Basil %s does not exists", basil.getQr());
-            System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, BasilErrors.BASIL_NOT_FOUND.toString());
-        }
-
+        BasilLeg basilLegFromDb = loadBasilLeg(stub, basil.getQr());
         String ownerOrg = ctx.getClientIdentity().getMSPID();
 
-
         if (!basil.getOwner().equals(ownerOrg)) {
             String errorMessage = String.format("Your are not the owner of %s", basil.getQr());
             System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, BasilErrors.NOT_YOUR_BASIL.toString());
+            throw failure(errorMessage, BasilErrors.NOT_YOUR_BASIL);
         }
+        checkOwner(basilLegFromDb, ownerOrg);
 
-        String basilLegFromDbJSON = stub.getStringState(basil.getQr());
-        BasilLeg basilLegFromDb = genson.deserialize(basilLegFromDbJSON, BasilLeg.class);
-
+        moveGeoIndex(stub, basilLegFromDb, basilLeg);
         basilLegFromDb.setBasil(basil);
         basilLegFromDb.setGpsPosition(basilLeg.getGpsPosition());
         basilLegFromDb.setTimestamp(basilLeg.getTimestamp());
 
-        stub.putStringState(basil.getQr(), genson.serialize(basilLegFromDb));
+        stub.putState(basil.getQr(), codec.encode(basilLegFromDb));
+        emitEvents(stub, Collections.singletonList(BasilEvent.of(BasilEvent.UPDATED, basilLegFromDb)));
 
         return basilLegFromDb;
     }
 
+    /**
+     * Creates every plant of a JSON array of legs in a single transaction. Items are
+     * validated one by one: the ones that fail are reported and skipped, the others are
+     * written in the same read/write set.
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CreatePlants(final Context ctx, final String basilLegArrayJSON) throws Exception {
+
+        ChaincodeStub stub = ctx.getStub();
+        BasilLeg[] basilLegs = parseBasilLegs(basilLegArrayJSON);
+
+        List<BasilBatchResult> results = new ArrayList<BasilBatchResult>(basilLegs.length);
+        // the ledger does not return our own pending writes, so remember them
+        Set<String> created = new HashSet<String>();
+        Map<String, Long> createdByOwner = new HashMap<String, Long>();
+        List<BasilEvent> events = new ArrayList<BasilEvent>(basilLegs.length);
+
+        for (BasilLeg basilLeg : basilLegs) {
+            if (!isValidBatchItem(basilLeg)) {
+                results.add(new BasilBatchResult(qrOf(basilLeg), BasilErrors.INVALID_ARGUMENT.toString()));
+                continue;
+            }
+            String qr = basilLeg.getBasil().getQr();
+
+            if (created.contains(qr) || CheckBasil(ctx, qr)) {
+                results.add(new BasilBatchResult(qr, BasilErrors.BASIL_ALREADY_EXISTS.toString()));
+                continue;
+            }
+
+            stub.putState(qr, codec.encode(basilLeg));
+            putOwnerIndex(stub, basilLeg.getBasil().getOwner(), qr);
+            putGeoIndex(stub, qr, basilLeg.getGpsPosition());
+            created.add(qr);
+            createdByOwner.merge(basilLeg.getBasil().getOwner(), 1L, Long::sum);
+            events.add(BasilEvent.of(BasilEvent.CREATED, basilLeg));
+            results.add(new BasilBatchResult(qr, BasilBatchResult.OK));
+        }
+        addToOwnerStats(stub, createdByOwner);
+        emitEvents(stub, events);
+
+        final String response = genson.serialize(results);
+        return response;
+    }
+
+    /**
+     * Updates every plant of a JSON array of legs in a single transaction, with the same
+     * per-item reporting as {@link #CreatePlants(Context, String)}.
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String UpdatePlants(final Context ctx, final String basilLegArrayJSON) throws Exception {
+
+        ChaincodeStub stub = ctx.getStub();
+        BasilLeg[] basilLegs = parseBasilLegs(basilLegArrayJSON);
+        String ownerOrg = ctx.getClientIdentity().getMSPID();
+
+        List<BasilBatchResult> results = new ArrayList<BasilBatchResult>(basilLegs.length);
+        // the ledger does not return our own pending writes, so remember them
+        Map<String, BasilLeg> updated = new HashMap<String, BasilLeg>();
+        List<BasilEvent> events = new ArrayList<BasilEvent>(basilLegs.length);
+
+        for (BasilLeg basilLeg : basilLegs) {
+            if (!isValidBatchItem(basilLeg)) {
+                results.add(new BasilBatchResult(qrOf(basilLeg), BasilErrors.INVALID_ARGUMENT.toString()));
+                continue;
+            }
+            Basil basil = basilLeg.getBasil();
+            String qr = basil.getQr();
+
+            BasilLeg basilLegFromDb = updated.containsKey(qr) ? updated.get(qr) : readBasilLeg(stub, qr);
+            if (basilLegFromDb == null) {
+                results.add(new BasilBatchResult(qr, BasilErrors.BASIL_NOT_FOUND.toString()));
+                continue;
+            }
+
+            if (!ownerOrg.equals(basil.getOwner()) || !ownerOrg.equals(basilLegFromDb.getBasil().getOwner())) {
+                results.add(new BasilBatchResult(qr, BasilErrors.NOT_YOUR_BASIL.toString()));
+                continue;
+            }
+
+            moveGeoIndex(stub, basilLegFromDb, basilLeg);
+            basilLegFromDb.setBasil(basil);
+            basilLegFromDb.setGpsPosition(basilLeg.getGpsPosition());
+            basilLegFromDb.setTimestamp(basilLeg.getTimestamp());
+
+            stub.putState(qr, codec.encode(basilLegFromDb));
+            updated.put(qr, basilLegFromDb);
+            events.add(BasilEvent.of(BasilEvent.UPDATED, basilLegFromDb));
+            results.add(new BasilBatchResult(qr, BasilBatchResult.OK));
+        }
+        emitEvents(stub, events);
+
+        final String response = genson.serialize(results);
+        return response;
+    }
+
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public BasilLeg GetTheStateOfPlant(final Context ctx, final String QRCode) throws Exception {
 
         ChaincodeStub stub = ctx.getStub();
 
-        if (!CheckBasil(ctx, QRCode)) {
-            String errorMessage = String.format("Basil %s does not exists", QRCode);
+        return withLatestPosition(stub, loadBasilLeg(stub, QRCode));
+    }
+
+    /**
+     * Records a GPS fix of the plant without rewriting it. The fix is stored under its own
+     * key for the plant and time bucket, so position updates do not grow the history of the
+     * plant; a newer fix in the same bucket replaces an older one, never the other way round.
+     * Reads of the current state merge the latest fix.
+     * <p>
+     * The plant is still read, for the owner check and the event, so an UpdatePlant,
+     * TransferOwnership or DeletePlant committed meanwhile invalidates the fix, and so does
+     * a concurrent fix of the plant in the same or a newer bucket. Fixes of different plants,
+     * and late fixes of older buckets, do not conflict.
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public BasilPosition RecordPosition(final Context ctx, final String QRCode, final String gpsPosition,
+                                        final long timestamp) throws Exception {
+
+        GpsPosition gps;
+        try {
+            gps = GpsPosition.parse(gpsPosition);
+        } catch (IllegalArgumentException e) {
+            gps = null;
+        }
+        if (gps == null || timestamp < 0) {
+            String errorMessage = String.format("Invalid position %s at %d", gpsPosition, timestamp);
             System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, BasilErrors.BASIL_NOT_FOUND.toString());
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
         }
 
-        String basilLegJSONSerialized = stub.getStringState(QRCode);
-        BasilLeg deserializedBasilLeg = genson.deserialize(basilLegJSONSerialized, BasilLeg.class);
+        ChaincodeStub stub = ctx.getStub();
+
+        BasilLeg basilLegFromDb = loadBasilLeg(stub, QRCode);
+        checkOwner(basilLegFromDb, ctx.getClientIdentity().getMSPID());
 
-        return deserializedBasilLeg;
+        BasilPosition position = new BasilPosition(timestamp, gps);
+        String positionKey = positionKey(stub, QRCode, timestamp);
+        byte[] bucketValue = stub.getState(positionKey);
+        if (bucketValue != null && bucketValue.length > 0
+                && genson.deserialize(bucketValue, BasilPosition.class).getTimestamp() >= timestamp) {
+            // a newer fix of the same bucket is kept
+            return position;
+        }
+        // read before the write, which it would not see anyway
+        BasilPosition latest = latestPosition(stub, QRCode);
+        stub.putState(positionKey, genson.serialize(position).getBytes(StandardCharsets.UTF_8));
+
+        // only a fix newer than both the plant and its latest fix is what reads now return
+        if (timestamp > basilLegFromDb.getTimestamp() && (latest == null || timestamp > latest.getTimestamp())) {
+            // written blindly like the position: the entries of earlier cells are left behind
+            // and skipped by queries, until the plant is next updated or deleted
+            putGeoIndex(stub, QRCode, gps);
+
+            // the event carries the plant as reads will now return it
+            basilLegFromDb.setGpsPosition(gps);
+            basilLegFromDb.setTimestamp(timestamp);
+            emitEvents(stub, Collections.singletonList(BasilEvent.of(BasilEvent.MOVED, basilLegFromDb)));
+        }
+
+        return position;
     }
 
 
@@ -175,28 +682,87 @@ public final class BasilContract implements ContractInterface {
 
         ChaincodeStub stub = ctx.getStub();
 
-        if (!CheckBasil(ctx, QRCode)) {
-            String errorMessage = String.format("Basil %s does not exists", QRCode);
-            System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, BasilErrors.BASIL_NOT_FOUND.toString());
-        }
+        BasilLeg basilLegFromDb = loadBasilLeg(stub, QRCode);
+        checkOwner(basilLegFromDb, ctx.getClientIdentity().getMSPID());
 
-        String basilLegFromDbJSON = stub.getStringState(QRCode);
-        BasilLeg basilLegFromDb = genson.deserialize(basilLegFromDbJSON, BasilLeg.class);
         Basil basil = basilLegFromDb.getBasil();
+        String seller = basil.getOwner();
+        delOwnerIndex(stub, seller, QRCode);
+        basil.setOwner(buyer);
+        stub.putState(QRCode, codec.encode(basilLegFromDb));
+        putOwnerIndex(stub, buyer, QRCode);
+        if (!seller.equals(buyer)) {
+            Map<String, Long> transferred = new HashMap<String, Long>();
+            transferred.put(seller, -1L);
+            transferred.put(buyer, 1L);
+            addToOwnerStats(stub, transferred);
+        }
+        emitEvents(stub, Collections.singletonList(BasilEvent.of(BasilEvent.TRANSFERRED, basilLegFromDb)));
 
-        String ownerOrg = ctx.getClientIdentity().getMSPID();
+        return basil;
+    }
 
-        if (!basil.getOwner().equals(ownerOrg)) {
-            String errorMessage = String.format("Your are not the owner of %s", QRCode);
+    /**
+     * Transfers every plant of a JSON array of QR codes to the buyer in a single
+     * transaction, all or nothing: if the array is malformed or holds a null, or if any plant
+     * is missing, listed twice or not owned by the caller, the transaction fails and nothing
+     * is transferred. Every plant is read once to check it before any is written.
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public BasilTransferSummary TransferOwnershipBatch(final Context ctx, final String qrArrayJSON,
+                                                       final String buyer) throws Exception {
+
+        ChaincodeStub stub = ctx.getStub();
+        String[] qrs;
+        try {
+            qrs = genson.deserialize(qrArrayJSON, String[].class);
+        } catch (JsonBindingException e) {
+            qrs = null;
+        }
+        if (qrs == null || Arrays.asList(qrs).contains(null)) {
+            String errorMessage = String.format("Invalid transfer batch %s", qrArrayJSON);
             System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, BasilErrors.NOT_YOUR_BASIL.toString());
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
         }
+        if (qrs.length == 0 || qrs.length > MAX_TRANSFER_BATCH) {
+            String errorMessage = String.format("A transfer batch holds 1 to %d plants", MAX_TRANSFER_BATCH);
+            System.out.println(errorMessage);
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+        }
+        String seller = ctx.getClientIdentity().getMSPID();
 
-        basil.setOwner(buyer);
-        stub.putStringState(QRCode, genson.serialize(basilLegFromDb));
+        // the ledger does not return our own pending writes, so a QR listed twice would be
+        // read as still owned by the seller
+        Map<String, BasilLeg> basilLegs = new LinkedHashMap<String, BasilLeg>(qrs.length * 2);
+        for (String qr : qrs) {
+            if (basilLegs.containsKey(qr)) {
+                String errorMessage = String.format("Basil %s is listed more than once", qr);
+                System.out.println(errorMessage);
+                throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+            }
+            BasilLeg basilLegFromDb = loadBasilLeg(stub, qr);
+            checkOwner(basilLegFromDb, seller);
+            basilLegs.put(qr, basilLegFromDb);
+        }
 
-        return basil;
+        List<BasilEvent> events = new ArrayList<BasilEvent>(basilLegs.size());
+        for (BasilLeg basilLeg : basilLegs.values()) {
+            String qr = basilLeg.getBasil().getQr();
+            delOwnerIndex(stub, seller, qr);
+            basilLeg.getBasil().setOwner(buyer);
+            stub.putState(qr, codec.encode(basilLeg));
+            putOwnerIndex(stub, buyer, qr);
+            events.add(BasilEvent.of(BasilEvent.TRANSFERRED, basilLeg));
+        }
+        if (!seller.equals(buyer)) {
+            Map<String, Long> transferred = new HashMap<String, Long>();
+            transferred.put(seller, (long) -basilLegs.size());
+            transferred.put(buyer, (long) basilLegs.size());
+            addToOwnerStats(stub, transferred);
+        }
+        emitEvents(stub, events);
+
+        return new BasilTransferSummary(seller, buyer, basilLegs.size());
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -204,23 +770,288 @@ public final class BasilContract implements ContractInterface {
 
         ChaincodeStub stub = ctx.getStub();
 
-        if (!CheckBasil(ctx, QRCode)) {
-            String errorMessage = String.format("Basil %s does not exists", QRCode);
+        BasilLeg basilLegFromDb = loadBasilLeg(stub, QRCode);
+        checkOwner(basilLegFromDb, ctx.getClientIdentity().getMSPID());
+
+        String owner = basilLegFromDb.getBasil().getOwner();
+        stub.delState(QRCode);
+        delOwnerIndex(stub, owner, QRCode);
+        addToOwnerStats(stub, Collections.singletonMap(owner, -1L));
+        clearGeoIndex(stub, QRCode);
+        try (QueryResultsIterator<KeyValue> positions = stub.getStateByPartialCompositeKey(POSITION_KEY, QRCode)) {
+            for (KeyValue position : positions) {
+                stub.delState(position.getKey());
+            }
+        }
+        emitEvents(stub, Collections.singletonList(new BasilEvent(BasilEvent.DELETED, QRCode, owner, null)));
+    }
+
+    /**
+     * Parses a leg passed as an argument; a malformed leg, a bad position included, is an
+     * invalid argument.
+     */
+    private BasilLeg parseBasilLeg(final String basilLegJSON) {
+        BasilLeg basilLeg;
+        try {
+            basilLeg = codec.parse(basilLegJSON);
+        } catch (JsonBindingException e) {
+            basilLeg = null;
+        }
+        if (basilLeg == null || basilLeg.getBasil() == null || basilLeg.getBasil().getQr() == null) {
+            String errorMessage = String.format("Invalid leg %s", basilLegJSON);
+            System.out.println(errorMessage);
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+        }
+        if (!hasOwner(basilLeg)) {
+            String errorMessage = String.format("Missing owner of %s", basilLeg.getBasil().getQr());
             System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, BasilErrors.BASIL_NOT_FOUND.toString());
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
         }
+        return basilLeg;
+    }
 
-        String ownerOrg = ctx.getClientIdentity().getMSPID();
-        String basilLegFromDbJSON = stub.getStringState(QRCode);
-        BasilLeg basilLegFromDb = genson.deserialize(basilLegFromDbJSON, BasilLeg.class);
-        Basil basil = basilLegFromDb.getBasil();
+    private BasilLeg[] parseBasilLegs(final String basilLegArrayJSON) {
+        try {
+            return codec.parseArray(basilLegArrayJSON);
+        } catch (JsonBindingException e) {
+            String errorMessage = String.format("Invalid leg array %s", basilLegArrayJSON);
+            System.out.println(errorMessage);
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+        }
+    }
 
-        if (!basil.getOwner().equals(ownerOrg)) {
-            String errorMessage = String.format("Your are not the owner of %s", QRCode);
+    /**
+     * Reads and parses the leg stored under the QR code, or returns null if there is none.
+     * This is the only place the contract reads a plant, so every transaction does a single
+     * state read and a single deserialization per key.
+     */
+    private BasilLeg readBasilLeg(final ChaincodeStub stub, final String qr) {
+        return codec.decode(stub.getState(qr));
+    }
+
+    private BasilLeg loadBasilLeg(final ChaincodeStub stub, final String qr) {
+        BasilLeg basilLeg = readBasilLeg(stub, qr);
+        if (basilLeg == null) {
+            String errorMessage = String.format("Basil %s does not exists", qr);
             System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, BasilErrors.NOT_YOUR_BASIL.toString());
+            throw failure(errorMessage, BasilErrors.BASIL_NOT_FOUND);
         }
+        return basilLeg;
+    }
 
-        stub.delState(QRCode);
+    private static String positionKey(final ChaincodeStub stub, final String qr, final long timestamp) {
+        String invertedBucket = String.format("%019d", Long.MAX_VALUE - timestamp / POSITION_BUCKET_MS);
+        return stub.createCompositeKey(POSITION_KEY, qr, invertedBucket).toString();
+    }
+
+    /**
+     * Applies the latest position recorded for the plant, if it is newer than the leg. In a
+     * transaction the read conflicts with newer fixes of the plant (see latestPosition), so
+     * the only transaction calling it is RebuildGeoIndex, which accepts that.
+     */
+    private BasilLeg withLatestPosition(final ChaincodeStub stub, final BasilLeg basilLeg) throws Exception {
+        BasilPosition position = latestPosition(stub, basilLeg.getBasil().getQr());
+        if (position != null && position.getTimestamp() > basilLeg.getTimestamp()) {
+            basilLeg.setGpsPosition(position.getGpsPosition());
+            basilLeg.setTimestamp(position.getTimestamp());
+        }
+        return basilLeg;
+    }
+
+    /**
+     * Returns the latest position recorded for the plant, or null if there is none. Only the
+     * first key of the range is read, so in a transaction the read conflicts with new fixes
+     * of the plant in the same or a newer bucket, or with any new fix if it has none yet.
+     */
+    private BasilPosition latestPosition(final ChaincodeStub stub, final String qr) throws Exception {
+        try (QueryResultsIterator<KeyValue> positions = stub.getStateByPartialCompositeKey(POSITION_KEY, qr)) {
+            Iterator<KeyValue> latest = positions.iterator();
+            return latest.hasNext() ? genson.deserialize(latest.next().getValue(), BasilPosition.class) : null;
+        }
+    }
+
+    private static String[] geohashAttributes(final String geohash) {
+        String[] attributes = new String[geohash.length()];
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = String.valueOf(geohash.charAt(i));
+        }
+        return attributes;
+    }
+
+    private static void putGeoIndex(final ChaincodeStub stub, final String qr, final GpsPosition gpsPosition) {
+        if (gpsPosition == null) {
+            return;
+        }
+        String geohash = Geohash.encode(gpsPosition, GEO_PRECISION);
+        String[] attributes = Arrays.copyOf(geohashAttributes(geohash), GEO_PRECISION + 1);
+        attributes[GEO_PRECISION] = qr;
+        stub.putState(stub.createCompositeKey(GEO_INDEX, attributes).toString(), INDEX_VALUE);
+        stub.putState(stub.createCompositeKey(GEO_CELLS, qr, geohash).toString(), INDEX_VALUE);
+    }
+
+    /**
+     * Removes every geohash index entry of the plant, including the ones left behind by
+     * RecordPosition.
+     */
+    private static void clearGeoIndex(final ChaincodeStub stub, final String qr) throws Exception {
+        try (QueryResultsIterator<KeyValue> cells = stub.getStateByPartialCompositeKey(GEO_CELLS, qr)) {
+            for (KeyValue cell : cells) {
+                String geohash = stub.splitCompositeKey(cell.getKey()).getAttributes().get(1);
+                String[] attributes = Arrays.copyOf(geohashAttributes(geohash), GEO_PRECISION + 1);
+                attributes[GEO_PRECISION] = qr;
+                stub.delState(stub.createCompositeKey(GEO_INDEX, attributes).toString());
+                stub.delState(cell.getKey());
+            }
+        }
+    }
+
+    /**
+     * Moves the geohash index entries of a plant being updated from the position reads
+     * returned before the update to the one they return after it, which stays the latest
+     * recorded fix if that is newer than the update. Reading the fixes makes the update
+     * conflict with a concurrent RecordPosition of the plant, the price of an index that
+     * never loses the position reads return. The scan of clearGeoIndex is only paid when
+     * that position actually changes.
+     */
+    private void moveGeoIndex(final ChaincodeStub stub, final BasilLeg stored, final BasilLeg updated)
+            throws Exception {
+        String qr = stored.getBasil().getQr();
+        BasilPosition latest = latestPosition(stub, qr);
+        GpsPosition from = latest != null && latest.getTimestamp() > stored.getTimestamp()
+                ? latest.getGpsPosition() : stored.getGpsPosition();
+        GpsPosition to = latest != null && latest.getTimestamp() > updated.getTimestamp()
+                ? latest.getGpsPosition() : updated.getGpsPosition();
+        if (!Objects.equals(from, to)) {
+            clearGeoIndex(stub, qr);
+            putGeoIndex(stub, qr, to);
+        }
+    }
+
+    private static boolean isIndexedAt(final BasilLeg basilLeg, final List<String> indexAttributes) {
+        GpsPosition gpsPosition = basilLeg.getGpsPosition();
+        if (gpsPosition == null) {
+            return false;
+        }
+        String geohash = Geohash.encode(gpsPosition, GEO_PRECISION);
+        for (int i = 0; i < GEO_PRECISION; i++) {
+            if (!indexAttributes.get(i).equals(String.valueOf(geohash.charAt(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInBox(final GpsPosition gpsPosition, final double minLat, final double minLon,
+                                   final double maxLat, final double maxLon) {
+        return gpsPosition.getLatitude() >= minLat && gpsPosition.getLatitude() <= maxLat
+                && gpsPosition.getLongitude() >= minLon && gpsPosition.getLongitude() <= maxLon;
+    }
+
+    private static int maxTransferBatch(final Map<String, String> env) {
+        String setting = env.getOrDefault("BASIL_MAX_TRANSFER_BATCH", "500");
+        int value;
+        try {
+            value = Integer.parseInt(setting.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("BASIL_MAX_TRANSFER_BATCH must be a number: " + setting, e);
+        }
+        if (value <= 0) {
+            throw new IllegalArgumentException("BASIL_MAX_TRANSFER_BATCH must be positive: " + value);
+        }
+        return value;
+    }
+
+    // a batch item may lack the plant, its QR code or its owner, which the per-item result reports
+    private static boolean isValidBatchItem(final BasilLeg basilLeg) {
+        return basilLeg != null && basilLeg.getBasil() != null && basilLeg.getBasil().getQr() != null
+                && hasOwner(basilLeg) && hasValidPosition(basilLeg);
+    }
+
+    // the owner is part of the owner index key, which cannot hold a null attribute
+    private static boolean hasOwner(final BasilLeg basilLeg) {
+        String owner = basilLeg.getBasil().getOwner();
+        return owner != null && !owner.isEmpty();
+    }
+
+    private static String qrOf(final BasilLeg basilLeg) {
+        return basilLeg == null || basilLeg.getBasil() == null ? null : basilLeg.getBasil().getQr();
+    }
+
+    private static boolean hasValidPosition(final BasilLeg basilLeg) {
+        return basilLeg.getGpsPosition() == null || basilLeg.getGpsPosition().inRange();
+    }
+
+    private static void checkPosition(final BasilLeg basilLeg) {
+        if (!hasValidPosition(basilLeg)) {
+            String errorMessage = String.format("Invalid position of %s", basilLeg.getBasil().getQr());
+            System.out.println(errorMessage);
+            throw failure(errorMessage, BasilErrors.INVALID_ARGUMENT);
+        }
+    }
+
+    private static String ownerStatsShard(final ChaincodeStub stub) {
+        return String.format("%02d", Math.floorMod(stub.getTxId().hashCode(), OWNER_STATS_SHARDS));
+    }
+
+    /**
+     * Adds the given change in plant count of each owner to the shard of this transaction.
+     * Each shard is read and written once, so call it once per transaction.
+     */
+    private void addToOwnerStats(final ChaincodeStub stub, final Map<String, Long> plantCountChanges) {
+        String shard = ownerStatsShard(stub);
+        long now = stub.getTxTimestamp().toEpochMilli();
+
+        for (Map.Entry<String, Long> change : plantCountChanges.entrySet()) {
+            String key = stub.createCompositeKey(OWNER_STATS, change.getKey(), shard).toString();
+            byte[] value = stub.getState(key);
+
+            OwnerStats shardStats = value == null || value.length == 0
+                    ? new OwnerStats(change.getKey(), 0, 0)
+                    : genson.deserialize(value, OwnerStats.class);
+            shardStats.setPlantCount(shardStats.getPlantCount() + change.getValue());
+            shardStats.setLastUpdate(now);
+            stub.putState(key, genson.serialize(shardStats).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void putOwnerIndex(final ChaincodeStub stub, final String owner, final String qr) {
+        stub.putState(stub.createCompositeKey(OWNER_INDEX, owner, qr).toString(), INDEX_VALUE);
+    }
+
+    private static void delOwnerIndex(final ChaincodeStub stub, final String owner, final String qr) {
+        stub.delState(stub.createCompositeKey(OWNER_INDEX, owner, qr).toString());
+    }
+
+    /**
+     * Publishes the changes made by the transaction. Fabric delivers the event only once the
+     * transaction is committed as valid.
+     */
+    private void emitEvents(final ChaincodeStub stub, final List<BasilEvent> events) {
+        if (!events.isEmpty()) {
+            stub.setEvent(CHANGE_EVENT, genson.serialize(events).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Resolves owner index entries to the plants they point at, with their latest position.
+     */
+    private void addIndexedBasilLegs(final ChaincodeStub stub, final Iterable<KeyValue> indexEntries,
+                                     final List<BasilLeg> basilLegs) throws Exception {
+        for (KeyValue indexEntry : indexEntries) {
+            String qr = stub.splitCompositeKey(indexEntry.getKey()).getAttributes().get(1);
+            BasilLeg basilLeg = readBasilLeg(stub, qr);
+            if (basilLeg != null) {
+                basilLegs.add(withLatestPosition(stub, basilLeg));
+            }
+        }
+    }
+
+    private static void checkOwner(final BasilLeg basilLeg, final String ownerOrg) {
+        Basil basil = basilLeg.getBasil();
+        if (!basil.getOwner().equals(ownerOrg)) {
+            String errorMessage = String.format("Your are not the owner of %s", basil.getQr());
+            System.out.println(errorMessage);
+            throw failure(errorMessage, BasilErrors.NOT_YOUR_BASIL);
+        }
     }
 }
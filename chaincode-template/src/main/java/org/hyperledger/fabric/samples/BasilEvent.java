@@ -0,0 +1,113 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * A change made to a plant, published as part of the chaincode event of the transaction.
+ * It carries the whole leg as written (none for a delete), so a listener can apply it
+ * without reading the ledger and applying it twice has no further effect.
+ */
+@DataType()
+public final class BasilEvent {
+
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String TRANSFERRED = "TRANSFERRED";
+    public static final String MOVED = "MOVED";
+    public static final String DELETED = "DELETED";
+
+    @Property()
+    private String type;
+
+    @Property()
+    private String qr;
+
+    @Property()
+    private String owner;
+
+    @Property()
+    private BasilLeg basilLeg;
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public void setQr(String qr) {
+        this.qr = qr;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public void setBasilLeg(BasilLeg basilLeg) {
+        this.basilLeg = basilLeg;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getQr() {
+        return qr;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public BasilLeg getBasilLeg() {
+        return basilLeg;
+    }
+
+    public BasilEvent(@JsonProperty("type") final String type, @JsonProperty("qr") final String qr,
+                      @JsonProperty("owner") final String owner, @JsonProperty("basilLeg") final BasilLeg basilLeg) {
+        this.type = type;
+        this.qr = qr;
+        this.owner = owner;
+        this.basilLeg = basilLeg;
+    }
+
+    public static BasilEvent of(final String type, final BasilLeg basilLeg) {
+        Basil basil = basilLeg.getBasil();
+        return new BasilEvent(type, basil.getQr(), basil.getOwner(), basilLeg);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilEvent other = (BasilEvent) obj;
+
+        return Objects.equals(getType(), other.getType())
+                && Objects.equals(getQr(), other.getQr())
+                && Objects.equals(getOwner(), other.getOwner())
+                && Objects.equals(getBasilLeg(), other.getBasilLeg());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getType(), getQr(), getOwner(), getBasilLeg());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [type=" + type + ", qr="
+                + qr + ", owner=" + owner + "]";
+    }
+}
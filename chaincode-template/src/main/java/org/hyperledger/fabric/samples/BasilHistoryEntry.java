@@ -0,0 +1,101 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * One modification of a plant: the transaction that made it, its timestamp in epoch
+ * milliseconds, whether it deleted the plant and, if not, the leg it wrote.
+ */
+@DataType()
+public final class BasilHistoryEntry {
+
+    @Property()
+    private String txId;
+
+    @Property()
+    private long timestamp;
+
+    @Property()
+    private boolean deleted;
+
+    @Property()
+    private BasilLeg basilLeg;
+
+    public void setTxId(String txId) {
+        this.txId = txId;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    public void setBasilLeg(BasilLeg basilLeg) {
+        this.basilLeg = basilLeg;
+    }
+
+    public String getTxId() {
+        return txId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public BasilLeg getBasilLeg() {
+        return basilLeg;
+    }
+
+    public BasilHistoryEntry(@JsonProperty("txId") final String txId, @JsonProperty("timestamp") final long timestamp,
+                             @JsonProperty("deleted") final boolean deleted, @JsonProperty("basilLeg") final BasilLeg basilLeg) {
+        this.txId = txId;
+        this.timestamp = timestamp;
+        this.deleted = deleted;
+        this.basilLeg = basilLeg;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilHistoryEntry other = (BasilHistoryEntry) obj;
+
+        return Objects.equals(getTxId(), other.getTxId())
+                && getTimestamp() == other.getTimestamp()
+                && isDeleted() == other.isDeleted()
+                && Objects.equals(getBasilLeg(), other.getBasilLeg());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getTxId(), getTimestamp(), isDeleted(), getBasilLeg());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [txId=" + txId + ", timestamp="
+                + timestamp + ", deleted=" + deleted + "]";
+    }
+}
@@ -18,17 +18,27 @@ public final class BasilLeg {
     private long timestamp;
 
     @Property()
-    private String gpsPosition;
+    private GpsPosition gpsPosition;
 
     @Property()
     private Basil basil;
 
+    // a stored free-form position string that does not parse, kept to be written back as it was
+    private String legacyGpsPosition;
+
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
 
-    public void setGpsPosition(String gpsPosition) {
+    /**
+     * Sets the position; a new position replaces the legacy string the leg may have kept,
+     * no position leaves it.
+     */
+    public void setGpsPosition(GpsPosition gpsPosition) {
         this.gpsPosition = gpsPosition;
+        if (gpsPosition != null) {
+            this.legacyGpsPosition = null;
+        }
     }
 
     public void setBasil(Basil basil) {
@@ -39,7 +49,7 @@ public final class BasilLeg {
         return timestamp;
     }
 
-    public String getGpsPosition() {
+    public GpsPosition getGpsPosition() {
         return gpsPosition;
     }
 
@@ -47,7 +57,16 @@ public final class BasilLeg {
         return basil;
    }
 
-    public BasilLeg(@JsonProperty("timestamp") final long timestamp, @JsonProperty("gpsPosition") final String gpsPosition,
+    // not bean accessors, so the legacy string is never part of a response or an event
+    String legacyGpsPosition() {
+        return legacyGpsPosition;
+    }
+
+    void keepLegacyGpsPosition(final String legacyGpsPosition) {
+        this.legacyGpsPosition = legacyGpsPosition;
+    }
+
+    public BasilLeg(@JsonProperty("timestamp") final long timestamp, @JsonProperty("gpsPosition") final GpsPosition gpsPosition,
                  @JsonProperty("basil") final Basil basil) {
         this.timestamp = timestamp;
         this.gpsPosition = gpsPosition;
@@ -67,8 +86,8 @@ public final class BasilLeg {
         BasilLeg other = (BasilLeg) obj;
 
         return Objects.deepEquals(
-                new String[]{String.valueOf(getTimestamp()), getGpsPosition()},
-                new String[]{String.valueOf(other.getTimestamp()), other.getGpsPosition()});
+                new Object[]{String.valueOf(getTimestamp()), getGpsPosition()},
+                new Object[]{String.valueOf(other.getTimestamp()), other.getGpsPosition()});
     }
 
     @Override
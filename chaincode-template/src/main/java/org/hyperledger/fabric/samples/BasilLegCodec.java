@@ -0,0 +1,308 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.owlike.genson.Context;
+import com.owlike.genson.Converter;
+import com.owlike.genson.Genson;
+import com.owlike.genson.JsonBindingException;
+import com.owlike.genson.stream.ObjectReader;
+import com.owlike.genson.stream.ObjectWriter;
+import com.owlike.genson.stream.ValueType;
+
+/**
+ * Encodes the {@link BasilLeg} stored on the ledger.
+ * <p>
+ * Two formats are understood when reading: the legacy Genson JSON (a value starting with
+ * '{') and a compact binary encoding whose first byte is a format version. Writes use the
+ * format selected with the {@code BASIL_STATE_FORMAT} environment variable ({@code json},
+ * the default, or {@code binary}), so existing JSON state keeps working after switching.
+ * <p>
+ * Binary values are written in version 2, which stores the position as two doubles; version 1
+ * values, which stored it as a "latitude,longitude" string, are still read.
+ * <p>
+ * Stored positions are read leniently: a legacy string that is not a valid
+ * "latitude,longitude" reads as no position, but is kept on the leg and written back as it
+ * was, in JSON or in binary version 1, so rewriting the plant does not lose it. Legs passed
+ * as transaction input are read with the {@link GpsPositionConverter#strict() strict}
+ * converter instead, so a bad position is rejected rather than dropped.
+ * <p>
+ * Binary values cannot be used by CouchDB rich queries; the contract does not need them,
+ * as it answers owner queries from its owner composite-key index.
+ * <p>
+ * JSON goes straight between {@code byte[]} and objects through Genson converters resolved
+ * once at construction, instead of the reflective lookup and intermediate String of
+ * {@code genson.serialize}/{@code deserialize} on every call. Instances are immutable and
+ * safe to share between the threads of the shim.
+ */
+public final class BasilLegCodec {
+
+    public enum Format {
+        JSON,
+        BINARY
+    }
+
+    static final byte BINARY_V1 = 1;
+
+    static final byte BINARY_V2 = 2;
+
+    private final Format format;
+    private final Genson genson;
+    private final Converter<Basil> basilConverter;
+    private final BasilLegConverter storedConverter = new BasilLegConverter(new GpsPositionConverter(), false);
+    private final BasilLegConverter inputConverter = new BasilLegConverter(GpsPositionConverter.strict(), true);
+
+    public BasilLegCodec(final Format format, final Genson genson) {
+        this.format = format;
+        this.genson = genson;
+        this.basilConverter = genson.provideConverter(Basil.class);
+    }
+
+    public static BasilLegCodec fromEnvironment(final Genson genson) {
+        String format = System.getenv().getOrDefault("BASIL_STATE_FORMAT", Format.JSON.name());
+        return new BasilLegCodec(Format.valueOf(format.trim().toUpperCase()), genson);
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public boolean isJson() {
+        return format == Format.JSON;
+    }
+
+    public byte[] encode(final BasilLeg basilLeg) {
+        if (isJson()) {
+            return encodeJson(basilLeg);
+        }
+        return encodeBinary(basilLeg);
+    }
+
+    /**
+     * Decodes a stored value in any supported format; returns null for a missing or
+     * deleted value.
+     */
+    public BasilLeg decode(final byte[] value) {
+        if (value == null || value.length == 0) {
+            return null;
+        }
+
+        byte version = value[0];
+        if (version == BINARY_V1 || version == BINARY_V2) {
+            return decodeBinary(value);
+        }
+        if (version == '{' || Character.isWhitespace(version)) {
+            return deserialize(storedConverter, genson.createReader(value));
+        }
+        throw new IllegalStateException("Unknown BasilLeg encoding version " + version);
+    }
+
+    /**
+     * Parses a leg passed as a JSON transaction argument.
+     *
+     * @throws JsonBindingException if the argument is not a JSON leg
+     */
+    public BasilLeg parse(final String basilLegJSON) {
+        return deserialize(inputConverter, genson.createReader(new StringReader(basilLegJSON)));
+    }
+
+    /**
+     * Parses an array of legs passed as a JSON transaction argument; null items stay null.
+     *
+     * @throws JsonBindingException if the argument is not a JSON array of legs
+     */
+    public BasilLeg[] parseArray(final String basilLegArrayJSON) {
+        ObjectReader reader = genson.createReader(new StringReader(basilLegArrayJSON));
+        List<BasilLeg> basilLegs = new ArrayList<BasilLeg>();
+        try {
+            if (reader.getValueType() != ValueType.ARRAY) {
+                throw new JsonBindingException("Expected an array of BasilLeg");
+            }
+            Context ctx = new Context(genson);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.next();
+                basilLegs.add(inputConverter.deserialize(reader, ctx));
+            }
+            reader.endArray();
+        } catch (JsonBindingException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new JsonBindingException("Could not deserialize an array of BasilLeg", e);
+        }
+        return basilLegs.toArray(new BasilLeg[0]);
+    }
+
+    private byte[] encodeJson(final BasilLeg basilLeg) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        ObjectWriter writer = genson.createWriter(bytes);
+        try {
+            storedConverter.serialize(basilLeg, writer, new Context(genson));
+            writer.flush();
+        } catch (Exception e) {
+            throw new JsonBindingException("Could not serialize " + basilLeg, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private <T> T deserialize(final Converter<T> converter, final ObjectReader reader) {
+        try {
+            return converter.deserialize(reader, new Context(genson));
+        } catch (Exception e) {
+            throw new JsonBindingException("Could not deserialize a BasilLeg", e);
+        }
+    }
+
+    private static byte[] encodeBinary(final BasilLeg basilLeg) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            // only version 1 can hold a legacy position string
+            String legacyGpsPosition = basilLeg.legacyGpsPosition();
+            out.writeByte(legacyGpsPosition != null ? BINARY_V1 : BINARY_V2);
+            out.writeLong(basilLeg.getTimestamp());
+
+            GpsPosition gpsPosition = basilLeg.getGpsPosition();
+            if (legacyGpsPosition != null) {
+                writeString(out, legacyGpsPosition);
+            } else {
+                out.writeBoolean(gpsPosition != null);
+                if (gpsPosition != null) {
+                    out.writeDouble(gpsPosition.getLatitude());
+                    out.writeDouble(gpsPosition.getLongitude());
+                }
+            }
+
+            Basil basil = basilLeg.getBasil();
+            out.writeBoolean(basil != null);
+            if (basil != null) {
+                writeString(out, basil.getQr());
+                writeString(out, basil.getExtraInfo());
+                writeString(out, basil.getOwner());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static BasilLeg decodeBinary(final byte[] value) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value, 1, value.length - 1))) {
+            long timestamp = in.readLong();
+
+            GpsPosition gpsPosition;
+            String legacyGpsPosition = null;
+            if (value[0] == BINARY_V1) {
+                legacyGpsPosition = readString(in);
+                gpsPosition = GpsPosition.parseLegacy(legacyGpsPosition);
+                if (gpsPosition != null) {
+                    legacyGpsPosition = null;
+                }
+            } else {
+                gpsPosition = in.readBoolean() ? new GpsPosition(in.readDouble(), in.readDouble()) : null;
+            }
+
+            Basil basil = null;
+            if (in.readBoolean()) {
+                basil = new Basil(readString(in), readString(in), readString(in));
+            }
+            BasilLeg basilLeg = new BasilLeg(timestamp, gpsPosition, basil);
+            basilLeg.keepLegacyGpsPosition(legacyGpsPosition);
+            return basilLeg;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads and writes a leg field by field, in the order and shape of Genson's bean
+     * converter, with its position read by the given converter and, for stored state, a
+     * legacy position string that does not parse kept as it was.
+     */
+    private final class BasilLegConverter implements Converter<BasilLeg> {
+
+        private final GpsPositionConverter gpsPositionConverter;
+        private final boolean strict;
+
+        BasilLegConverter(final GpsPositionConverter gpsPositionConverter, final boolean strict) {
+            this.gpsPositionConverter = gpsPositionConverter;
+            this.strict = strict;
+        }
+
+        @Override
+        public void serialize(final BasilLeg basilLeg, final ObjectWriter writer, final Context ctx)
+                throws Exception {
+            writer.beginObject();
+            writer.writeName("basil");
+            basilConverter.serialize(basilLeg.getBasil(), writer, ctx);
+            writer.writeName("gpsPosition");
+            if (basilLeg.legacyGpsPosition() != null) {
+                writer.writeValue(basilLeg.legacyGpsPosition());
+            } else if (basilLeg.getGpsPosition() == null) {
+                writer.writeNull();
+            } else {
+                gpsPositionConverter.serialize(basilLeg.getGpsPosition(), writer, ctx);
+            }
+            writer.writeName("timestamp").writeValue(basilLeg.getTimestamp());
+            writer.endObject();
+        }
+
+        @Override
+        public BasilLeg deserialize(final ObjectReader reader, final Context ctx) throws Exception {
+            if (reader.getValueType() == ValueType.NULL) {
+                return null;
+            }
+
+            long timestamp = 0;
+            GpsPosition gpsPosition = null;
+            String legacyGpsPosition = null;
+            Basil basil = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                ValueType type = reader.next();
+                if ("timestamp".equals(reader.name())) {
+                    timestamp = reader.valueAsLong();
+                } else if ("basil".equals(reader.name())) {
+                    basil = basilConverter.deserialize(reader, ctx);
+                } else if (!"gpsPosition".equals(reader.name())) {
+                    reader.skipValue();
+                } else if (type == ValueType.STRING && !strict) {
+                    legacyGpsPosition = reader.valueAsString();
+                    gpsPosition = GpsPosition.parseLegacy(legacyGpsPosition);
+                    if (gpsPosition != null) {
+                        legacyGpsPosition = null;
+                    }
+                } else if (type != ValueType.NULL) {
+                    gpsPosition = gpsPositionConverter.deserialize(reader, ctx);
+                }
+            }
+            reader.endObject();
+
+            BasilLeg basilLeg = new BasilLeg(timestamp, gpsPosition, basil);
+            basilLeg.keepLegacyGpsPosition(legacyGpsPosition);
+            return basilLeg;
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
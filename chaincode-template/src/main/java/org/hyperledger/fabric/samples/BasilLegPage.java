@@ -0,0 +1,89 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * One page of a paginated query: the records, the bookmark to pass back to get the
+ * next page (empty when there are no more pages) and how many records were fetched.
+ */
+@DataType()
+public final class BasilLegPage {
+
+    @Property()
+    private List<BasilLeg> records;
+
+    @Property()
+    private String bookmark;
+
+    @Property()
+    private int fetchedCount;
+
+    public void setRecords(List<BasilLeg> records) {
+        this.records = records;
+    }
+
+    public void setBookmark(String bookmark) {
+        this.bookmark = bookmark;
+    }
+
+    public void setFetchedCount(int fetchedCount) {
+        this.fetchedCount = fetchedCount;
+    }
+
+    public List<BasilLeg> getRecords() {
+        return records;
+    }
+
+    public String getBookmark() {
+        return bookmark;
+    }
+
+    public int getFetchedCount() {
+        return fetchedCount;
+    }
+
+    public BasilLegPage(@JsonProperty("records") final List<BasilLeg> records, @JsonProperty("bookmark") final String bookmark,
+                        @JsonProperty("fetchedCount") final int fetchedCount) {
+        this.records = records;
+        this.bookmark = bookmark;
+        this.fetchedCount = fetchedCount;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilLegPage other = (BasilLegPage) obj;
+
+        return Objects.equals(getRecords(), other.getRecords())
+                && Objects.equals(getBookmark(), other.getBookmark())
+                && getFetchedCount() == other.getFetchedCount();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getRecords(), getBookmark(), getFetchedCount());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [fetchedCount=" + fetchedCount
+                + ", bookmark=" + bookmark + "]";
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Per-function metrics of the transactions of {@link BasilContract}: a latency histogram
+ * and the state reads, writes, bytes and query rows of the transactions, as counted by
+ * {@link BasilContext}. Latency is the time spent in the contract function; argument
+ * parsing and response serialization by the shim are not included. Failed transactions
+ * are counted apart as well, and their latency is in the histogram when the contract
+ * raised the failure itself.
+ * <p>
+ * The metrics are exposed in the Prometheus text format on BASIL_METRICS_ADDRESS
+ * (host:port, path /metrics) and/or printed as one JSON line per function every
+ * BASIL_METRICS_LOG_INTERVAL_S seconds; see {@link #exportFromEnvironment()}.
+ */
+public final class BasilMetrics {
+
+    private static final BasilMetrics METRICS = new BasilMetrics();
+
+    // Upper bounds of the latency buckets, in seconds
+    private static final double[] BUCKETS =
+            {0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5};
+
+    private final ConcurrentMap<String, FunctionMetrics> functions = new ConcurrentHashMap<>();
+
+    private BasilMetrics() {
+    }
+
+    public static BasilMetrics get() {
+        return METRICS;
+    }
+
+    /**
+     * Starts the exports configured in the environment, if any.
+     */
+    public static void exportFromEnvironment() throws IOException {
+        Map<String, String> env = System.getenv();
+        if (env.containsKey("BASIL_METRICS_ADDRESS")) {
+            String address = env.get("BASIL_METRICS_ADDRESS").trim();
+            int colon = address.lastIndexOf(':');
+            METRICS.serve(new InetSocketAddress(address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1))));
+        }
+        if (env.containsKey("BASIL_METRICS_LOG_INTERVAL_S")) {
+            METRICS.log(Long.parseLong(env.get("BASIL_METRICS_LOG_INTERVAL_S").trim()));
+        }
+    }
+
+    static final class FunctionMetrics {
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder stateReads = new LongAdder();
+        private final LongAdder stateWrites = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder queryRows = new LongAdder();
+        private final LongAdder eventBytes = new LongAdder();
+        private final LongAdder responseChars = new LongAdder();
+
+        FunctionMetrics() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Records a transaction of the given function.
+     */
+    public void record(final String function, final long elapsedNanos, final MeteredChaincodeStub stub,
+                       final long responseChars, final boolean failed) {
+        FunctionMetrics metrics = metricsOf(function, stub);
+        if (failed) {
+            metrics.failures.increment();
+        }
+
+        double seconds = elapsedNanos / 1e9;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (seconds <= BUCKETS[i]) {
+                metrics.buckets[i].increment();
+                break;
+            }
+        }
+        metrics.count.increment();
+        metrics.nanos.add(elapsedNanos);
+        metrics.responseChars.add(responseChars);
+    }
+
+    /**
+     * Records a failed transaction of the given function whose latency is not known.
+     */
+    public void recordFailure(final String function, final MeteredChaincodeStub stub) {
+        metricsOf(function, stub).failures.increment();
+    }
+
+    private FunctionMetrics metricsOf(final String function, final MeteredChaincodeStub stub) {
+        // the function may be qualified with the contract name
+        String name = function.substring(function.indexOf(':') + 1);
+        FunctionMetrics metrics = functions.computeIfAbsent(name, f -> new FunctionMetrics());
+        metrics.stateReads.add(stub.getStateReads());
+        metrics.stateWrites.add(stub.getStateWrites());
+        metrics.bytesRead.add(stub.getBytesRead());
+        metrics.bytesWritten.add(stub.getBytesWritten());
+        metrics.queryRows.add(stub.getQueryRows());
+        metrics.eventBytes.add(stub.getEventBytes());
+        return metrics;
+    }
+
+    /**
+     * Forgets everything recorded so far, e.g. by a warm-up.
+     */
+    public void reset() {
+        functions.clear();
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text exposition format.
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP basil_transaction_duration_seconds Time spent in the contract function\n");
+        out.append("# TYPE basil_transaction_duration_seconds histogram\n");
+        for (Map.Entry<String, FunctionMetrics> entry : functions.entrySet()) {
+            String function = entry.getKey();
+            FunctionMetrics metrics = entry.getValue();
+            long count = metrics.count.sum();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += metrics.buckets[i].sum();
+                out.append("basil_transaction_duration_seconds_bucket{function=\"").append(function)
+                        .append("\",le=\"").append(BUCKETS[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append("basil_transaction_duration_seconds_bucket{function=\"").append(function)
+                    .append("\",le=\"+Inf\"} ").append(count).append('\n');
+            out.append("basil_transaction_duration_seconds_sum{function=\"").append(function).append("\"} ")
+                    .append(metrics.nanos.sum() / 1e9).append('\n');
+            out.append("basil_transaction_duration_seconds_count{function=\"").append(function).append("\"} ")
+                    .append(count).append('\n');
+        }
+        counter(out, "basil_transaction_failures_total", "Transactions whose function threw", m -> m.failures);
+        counter(out, "basil_state_reads_total", "World state keys read with getState", m -> m.stateReads);
+        counter(out, "basil_state_writes_total", "World state keys written or deleted", m -> m.stateWrites);
+        counter(out, "basil_state_read_bytes_total", "Bytes of values read, by getState and queries",
+                m -> m.bytesRead);
+        counter(out, "basil_state_written_bytes_total", "Bytes of values written", m -> m.bytesWritten);
+        counter(out, "basil_query_rows_total", "Rows iterated over in range, key and history queries",
+                m -> m.queryRows);
+        counter(out, "basil_event_bytes_total", "Bytes of chaincode event payloads", m -> m.eventBytes);
+        counter(out, "basil_response_chars_total", "Characters of JSON responses", m -> m.responseChars);
+        return out.toString();
+    }
+
+    private void counter(final StringBuilder out, final String name, final String help,
+                         final Function<FunctionMetrics, LongAdder> counter) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, FunctionMetrics> entry : functions.entrySet()) {
+            out.append(name).append("{function=\"").append(entry.getKey()).append("\"} ")
+                    .append(counter.apply(entry.getValue()).sum()).append('\n');
+        }
+    }
+
+    /**
+     * Returns one JSON object per function with its totals since the start, one per line.
+     */
+    public String toJsonLines() {
+        StringBuilder out = new StringBuilder(1024);
+        for (Map.Entry<String, FunctionMetrics> entry : functions.entrySet()) {
+            FunctionMetrics metrics = entry.getValue();
+            long count = metrics.count.sum();
+            out.append(String.format("{\"metric\":\"basil_transactions\",\"function\":\"%s\",\"count\":%d,"
+                            + "\"failures\":%d,\"meanMicros\":%d,\"stateReads\":%d,\"stateWrites\":%d,\"bytesRead\":%d,"
+                            + "\"bytesWritten\":%d,\"queryRows\":%d,\"eventBytes\":%d,\"responseChars\":%d}%n",
+                    entry.getKey(), count, metrics.failures.sum(), count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(metrics.nanos.sum()) / count,
+                    metrics.stateReads.sum(), metrics.stateWrites.sum(), metrics.bytesRead.sum(),
+                    metrics.bytesWritten.sum(), metrics.queryRows.sum(), metrics.eventBytes.sum(),
+                    metrics.responseChars.sum()));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Serves the Prometheus text on /metrics of the given address.
+     */
+    public HttpServer serve(final InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        System.out.println("Serving metrics on http://" + address.getHostString() + ":" + address.getPort()
+                + "/metrics");
+        return server;
+    }
+
+    /**
+     * Prints the JSON lines every given number of seconds, on a daemon thread.
+     */
+    public ScheduledExecutorService log(final long intervalSeconds) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "basil-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> System.out.print(toJsonLines()), intervalSeconds, intervalSeconds,
+                TimeUnit.SECONDS);
+        return executor;
+    }
+}
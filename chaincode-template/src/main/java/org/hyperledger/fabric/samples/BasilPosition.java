@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * A GPS fix of a plant, stored apart from its leg so that position updates do not rewrite
+ * the plant.
+ */
+@DataType()
+public final class BasilPosition {
+
+    @Property()
+    private long timestamp;
+
+    @Property()
+    private GpsPosition gpsPosition;
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public void setGpsPosition(GpsPosition gpsPosition) {
+        this.gpsPosition = gpsPosition;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public GpsPosition getGpsPosition() {
+        return gpsPosition;
+    }
+
+    public BasilPosition(@JsonProperty("timestamp") final long timestamp,
+                         @JsonProperty("gpsPosition") final GpsPosition gpsPosition) {
+        this.timestamp = timestamp;
+        this.gpsPosition = gpsPosition;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilPosition other = (BasilPosition) obj;
+
+        return getTimestamp() == other.getTimestamp() && Objects.equals(getGpsPosition(), other.getGpsPosition());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getTimestamp(), getGpsPosition());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [timestamp=" + timestamp
+                + ", gpsPosition=" + gpsPosition + "]";
+    }
+}
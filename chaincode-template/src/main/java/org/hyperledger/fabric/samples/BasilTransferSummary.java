@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Outcome of a batch ownership transfer: the plants of the seller that now belong to the
+ * buyer. The plants themselves are in the event of the transaction.
+ */
+@DataType()
+public final class BasilTransferSummary {
+
+    @Property()
+    private String seller;
+
+    @Property()
+    private String buyer;
+
+    @Property()
+    private int transferred;
+
+    public void setSeller(String seller) {
+        this.seller = seller;
+    }
+
+    public void setBuyer(String buyer) {
+        this.buyer = buyer;
+    }
+
+    public void setTransferred(int transferred) {
+        this.transferred = transferred;
+    }
+
+    public String getSeller() {
+        return seller;
+    }
+
+    public String getBuyer() {
+        return buyer;
+    }
+
+    public int getTransferred() {
+        return transferred;
+    }
+
+    public BasilTransferSummary(@JsonProperty("seller") final String seller, @JsonProperty("buyer") final String buyer,
+                                @JsonProperty("transferred") final int transferred) {
+        this.seller = seller;
+        this.buyer = buyer;
+        this.transferred = transferred;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        BasilTransferSummary other = (BasilTransferSummary) obj;
+
+        return Objects.equals(getSeller(), other.getSeller()) && Objects.equals(getBuyer(), other.getBuyer())
+                && getTransferred() == other.getTransferred();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getSeller(), getBuyer(), getTransferred());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [seller=" + seller
+                + ", buyer=" + buyer + ", transferred=" + transferred + "]";
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Geohash encoding of positions, and covering of bounding boxes with geohash cells.
+ * <p>
+ * A geohash of n characters names a cell of the latitude/longitude grid; the cells whose
+ * geohash starts with a given prefix are exactly the cells inside the cell of the prefix,
+ * which is what lets a box be searched with a few prefix scans of an index.
+ */
+public final class Geohash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private Geohash() {
+    }
+
+    public static String encode(final GpsPosition position, final int precision) {
+        return encode(position.getLatitude(), position.getLongitude(), precision);
+    }
+
+    public static String encode(final double latitude, final double longitude, final int precision) {
+        double minLat = -90;
+        double maxLat = 90;
+        double minLon = -180;
+        double maxLon = 180;
+
+        StringBuilder geohash = new StringBuilder(precision);
+        boolean even = true;
+        int bits = 0;
+        int value = 0;
+
+        // bits alternate between longitude and latitude, starting with longitude
+        while (geohash.length() < precision) {
+            if (even) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLon = mid;
+                } else {
+                    value <<= 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLat = mid;
+                } else {
+                    value <<= 1;
+                    maxLat = mid;
+                }
+            }
+            even = !even;
+
+            if (++bits == 5) {
+                geohash.append(BASE32[value]);
+                bits = 0;
+                value = 0;
+            }
+        }
+        return geohash.toString();
+    }
+
+    /**
+     * Returns the sorted geohashes of the cells covering the box, at the longest precision
+     * up to {@code maxPrecision} that needs at most {@code maxCells} cells. Boxes too large
+     * for that are covered by single-character cells, of which there are at most 32.
+     */
+    public static List<String> cover(final double minLat, final double minLon, final double maxLat,
+                                     final double maxLon, final int maxPrecision, final int maxCells) {
+        for (int precision = maxPrecision; precision >= 1; precision--) {
+            int latBits = 5 * precision / 2;
+            int lonBits = 5 * precision - latBits;
+            double cellHeight = 180.0 / (1L << latBits);
+            double cellWidth = 360.0 / (1L << lonBits);
+
+            long firstRow = cellIndex(minLat + 90, cellHeight, latBits);
+            long lastRow = cellIndex(maxLat + 90, cellHeight, latBits);
+            long firstColumn = cellIndex(minLon + 180, cellWidth, lonBits);
+            long lastColumn = cellIndex(maxLon + 180, cellWidth, lonBits);
+
+            long cells = (lastRow - firstRow + 1) * (lastColumn - firstColumn + 1);
+            if (cells > maxCells && precision > 1) {
+                continue;
+            }
+
+            TreeSet<String> geohashes = new TreeSet<>();
+            for (long row = firstRow; row <= lastRow; row++) {
+                for (long column = firstColumn; column <= lastColumn; column++) {
+                    // the centre of the cell, so rounding cannot land in a neighbour
+                    geohashes.add(encode((row + 0.5) * cellHeight - 90, (column + 0.5) * cellWidth - 180,
+                            precision));
+                }
+            }
+            return new ArrayList<>(geohashes);
+        }
+        throw new IllegalArgumentException("Precision must be positive: " + maxPrecision);
+    }
+
+    private static long cellIndex(final double offset, final double cellSize, final int bits) {
+        return Math.min((long) Math.floor(offset / cellSize), (1L << bits) - 1);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Latitude and longitude of a plant, in decimal degrees (WGS84).
+ */
+@DataType()
+public final class GpsPosition {
+
+    @Property()
+    private double latitude;
+
+    @Property()
+    private double longitude;
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public GpsPosition(@JsonProperty("latitude") final double latitude,
+                       @JsonProperty("longitude") final double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Whether both coordinates are within WGS84 bounds. Not named as a getter so the shim does
+     * not serialize it as a property of every position it returns.
+     */
+    public boolean inRange() {
+        return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+    }
+
+    /**
+     * Parses the "latitude,longitude" form positions had when they were plain strings.
+     *
+     * @throws IllegalArgumentException if the text is not two numbers in range
+     */
+    public static GpsPosition parse(final String text) {
+        String[] parts = text.split(",");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected latitude,longitude: " + text);
+        }
+
+        GpsPosition position;
+        try {
+            position = new GpsPosition(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected latitude,longitude: " + text, e);
+        }
+        if (!position.inRange()) {
+            throw new IllegalArgumentException("Position out of range: " + text);
+        }
+        return position;
+    }
+
+    /**
+     * Reads a position stored as a string before it was typed. The string was free-form, so
+     * a value that is not a valid "latitude,longitude" reads as no position rather than
+     * making the plant unreadable.
+     */
+    public static GpsPosition parseLegacy(final String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return parse(text);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        GpsPosition other = (GpsPosition) obj;
+
+        return Double.compare(getLatitude(), other.getLatitude()) == 0
+                && Double.compare(getLongitude(), other.getLongitude()) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getLatitude(), getLongitude());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [latitude=" + latitude
+                + ", longitude=" + longitude + "]";
+    }
+}
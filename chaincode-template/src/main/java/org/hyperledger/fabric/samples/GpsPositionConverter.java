@@ -0,0 +1,85 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import com.owlike.genson.Context;
+import com.owlike.genson.Converter;
+import com.owlike.genson.stream.ObjectReader;
+import com.owlike.genson.stream.ObjectWriter;
+import com.owlike.genson.stream.ValueType;
+
+/**
+ * Genson converter of {@link GpsPosition}. Positions are written as
+ * {@code {"latitude":..,"longitude":..}}; the "latitude,longitude" strings of plants
+ * written before positions were typed are still accepted when reading.
+ * <p>
+ * The default converter is lenient, for stored state: a string that does not parse reads
+ * as no position and a missing coordinate as 0. The {@link #strict()} one is for
+ * transaction input: a string that does not parse, a missing coordinate or a value that
+ * is neither reads as a position out of range, which the contract rejects.
+ */
+public final class GpsPositionConverter implements Converter<GpsPosition> {
+
+    private final boolean strict;
+
+    public GpsPositionConverter() {
+        this(false);
+    }
+
+    private GpsPositionConverter(final boolean strict) {
+        this.strict = strict;
+    }
+
+    public static GpsPositionConverter strict() {
+        return new GpsPositionConverter(true);
+    }
+
+    @Override
+    public void serialize(final GpsPosition position, final ObjectWriter writer, final Context ctx) {
+        writer.beginObject()
+                .writeName("latitude").writeValue(position.getLatitude())
+                .writeName("longitude").writeValue(position.getLongitude())
+                .endObject();
+    }
+
+    @Override
+    public GpsPosition deserialize(final ObjectReader reader, final Context ctx) {
+        if (reader.getValueType() == ValueType.STRING) {
+            if (!strict) {
+                return GpsPosition.parseLegacy(reader.valueAsString());
+            }
+            try {
+                return GpsPosition.parse(reader.valueAsString());
+            } catch (IllegalArgumentException e) {
+                return invalid();
+            }
+        }
+        if (reader.getValueType() != ValueType.OBJECT && strict) {
+            reader.skipValue();
+            return invalid();
+        }
+
+        double latitude = strict ? Double.NaN : 0;
+        double longitude = strict ? Double.NaN : 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.next();
+            if ("latitude".equals(reader.name())) {
+                latitude = reader.valueAsDouble();
+            } else if ("longitude".equals(reader.name())) {
+                longitude = reader.valueAsDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new GpsPosition(latitude, longitude);
+    }
+
+    // NaN is never in range, so the position fails GpsPosition.inRange
+    private static GpsPosition invalid() {
+        return new GpsPosition(Double.NaN, Double.NaN);
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Counts the world state reads and writes of a transaction, the bytes they move and the rows
+ * its queries return, passing every call on to the peer's stub. Rows are counted as they are
+ * iterated, so a query read only in part counts only that part. Private data is passed on
+ * but not counted.
+ * <p>
+ * Like the stub, one instance serves one transaction on one thread.
+ */
+public final class MeteredChaincodeStub implements ChaincodeStub {
+
+    private final ChaincodeStub stub;
+
+    private long stateReads;
+    private long stateWrites;
+    private long bytesRead;
+    private long bytesWritten;
+    private long queryRows;
+    private long eventBytes;
+
+    public MeteredChaincodeStub(final ChaincodeStub stub) {
+        this.stub = stub;
+    }
+
+    public long getStateReads() {
+        return stateReads;
+    }
+
+    public long getStateWrites() {
+        return stateWrites;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getQueryRows() {
+        return queryRows;
+    }
+
+    public long getEventBytes() {
+        return eventBytes;
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        byte[] value = stub.getState(key);
+        stateReads++;
+        bytesRead += value == null ? 0 : value.length;
+        return value;
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        stub.putState(key, value);
+        stateWrites++;
+        bytesWritten += value.length;
+    }
+
+    @Override
+    public void delState(final String key) {
+        stub.delState(key);
+        stateWrites++;
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        stub.setEvent(name, payload);
+        eventBytes = payload == null ? 0 : payload.length;
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        return counted(stub.getStateByRange(startKey, endKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey,
+            final String endKey, final int pageSize, final String bookmark) {
+        return counted(stub.getStateByRangeWithPagination(startKey, endKey, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        return counted(stub.getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType,
+                                                                        final String... attributes) {
+        return counted(stub.getStateByPartialCompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        return counted(stub.getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(
+            final CompositeKey compositeKey, final int pageSize, final String bookmark) {
+        return counted(stub.getStateByPartialCompositeKeyWithPagination(compositeKey, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        return counted(stub.getQueryResult(query));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query,
+            final int pageSize, final String bookmark) {
+        return counted(stub.getQueryResultWithPagination(query, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        return counted(stub.getHistoryForKey(key));
+    }
+
+    private <T> QueryResultsIterator<T> counted(final QueryResultsIterator<T> results) {
+        return new QueryResultsIterator<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return countingIterator(results.iterator());
+            }
+
+            @Override
+            public void close() throws Exception {
+                results.close();
+            }
+        };
+    }
+
+    private <T> QueryResultsIteratorWithMetadata<T> counted(final QueryResultsIteratorWithMetadata<T> results) {
+        return new QueryResultsIteratorWithMetadata<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return countingIterator(results.iterator());
+            }
+
+            @Override
+            public QueryResponseMetadata getMetadata() {
+                return results.getMetadata();
+            }
+
+            @Override
+            public void close() throws Exception {
+                results.close();
+            }
+        };
+    }
+
+    private <T> Iterator<T> countingIterator(final Iterator<T> iterator) {
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                T row = iterator.next();
+                queryRows++;
+                if (row instanceof KeyValue) {
+                    bytesRead += ((KeyValue) row).getValue().length;
+                } else if (row instanceof KeyModification) {
+                    bytesRead += ((KeyModification) row).getValue().length;
+                }
+                return row;
+            }
+        };
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return stub.getArgs();
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        return stub.getStringArgs();
+    }
+
+    @Override
+    public String getFunction() {
+        return stub.getFunction();
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return stub.getParameters();
+    }
+
+    @Override
+    public String getTxId() {
+        return stub.getTxId();
+    }
+
+    @Override
+    public String getChannelId() {
+        return stub.getChannelId();
+    }
+
+    @Override
+    public Chaincode.Response invokeChaincode(final String chaincodeName, final List<byte[]> args, final String channel) {
+        return stub.invokeChaincode(chaincodeName, args, channel);
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        return stub.getStateValidationParameter(key);
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        stub.setStateValidationParameter(key, value);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return stub.createCompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return stub.splitCompositeKey(compositeKey);
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        return stub.getPrivateData(collection, key);
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        return stub.getPrivateDataHash(collection, key);
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        return stub.getPrivateDataValidationParameter(collection, key);
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        stub.putPrivateData(collection, key, value);
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        stub.setPrivateDataValidationParameter(collection, key, value);
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        stub.delPrivateData(collection, key);
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        stub.purgePrivateData(collection, key);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey,
+                                                                final String endKey) {
+        return stub.getPrivateDataByRange(collection, startKey, endKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+                                                                              final String compositeKey) {
+        return stub.getPrivateDataByPartialCompositeKey(collection, compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+                                                                              final CompositeKey compositeKey) {
+        return stub.getPrivateDataByPartialCompositeKey(collection, compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+                                                                              final String objectType,
+                                                                              final String... attributes) {
+        return stub.getPrivateDataByPartialCompositeKey(collection, objectType, attributes);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        return stub.getPrivateDataQueryResult(collection, query);
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return stub.getEvent();
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        return stub.getSignedProposal();
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return stub.getTxTimestamp();
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return stub.getCreator();
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return stub.getTransient();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        return stub.getBinding();
+    }
+
+    @Override
+    public String getMspId() {
+        return stub.getMspId();
+    }
+}
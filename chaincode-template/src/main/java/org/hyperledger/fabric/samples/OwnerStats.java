@@ -0,0 +1,88 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Number of plants of an owner and the time (epoch milliseconds of the transaction) it
+ * last changed. Also the value of each shard the contract keeps these counters in, where
+ * the count is the shard's share of the total and may be negative.
+ */
+@DataType()
+public final class OwnerStats {
+
+    @Property()
+    private String owner;
+
+    @Property()
+    private long plantCount;
+
+    @Property()
+    private long lastUpdate;
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public void setPlantCount(long plantCount) {
+        this.plantCount = plantCount;
+    }
+
+    public void setLastUpdate(long lastUpdate) {
+        this.lastUpdate = lastUpdate;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getPlantCount() {
+        return plantCount;
+    }
+
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    public OwnerStats(@JsonProperty("owner") final String owner, @JsonProperty("plantCount") final long plantCount,
+                      @JsonProperty("lastUpdate") final long lastUpdate) {
+        this.owner = owner;
+        this.plantCount = plantCount;
+        this.lastUpdate = lastUpdate;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        OwnerStats other = (OwnerStats) obj;
+
+        return Objects.equals(getOwner(), other.getOwner()) && getPlantCount() == other.getPlantCount()
+                && getLastUpdate() == other.getLastUpdate();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getOwner(), getPlantCount(), getLastUpdate());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [owner=" + owner
+                + ", plantCount=" + plantCount + ", lastUpdate=" + lastUpdate + "]";
+    }
+}
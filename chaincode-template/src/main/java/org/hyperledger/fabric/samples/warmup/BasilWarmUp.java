@@ -0,0 +1,203 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.contract.ContractRouter;
+import org.hyperledger.fabric.samples.Basil;
+import org.hyperledger.fabric.samples.BasilLeg;
+import org.hyperledger.fabric.samples.BasilMetrics;
+import org.hyperledger.fabric.samples.GpsPosition;
+import org.hyperledger.fabric.samples.GpsPositionConverter;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeServer;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.GensonBuilder;
+
+/**
+ * Runs every transaction of the contract through the shim's routing, argument conversion
+ * and response serialization against an {@link InMemoryChaincodeStub}, so that the classes
+ * involved are loaded and their hot paths compiled before the first real transaction.
+ * <p>
+ * Each round creates a few plants, updates, moves, queries, transfers and deletes them, so
+ * the in-memory ledger stays small whatever the number of rounds. The latency of each
+ * transaction in the first and in the last round is kept; the first round of a fresh JVM
+ * is what the first transactions after an upgrade cost without warm-up.
+ * <p>
+ * Also runs on its own, to measure that latency or as the training run of a class data
+ * sharing archive (see the {@code cdsArchive} task).
+ */
+public final class BasilWarmUp {
+
+    private static final String ORG1 = "Org1MSP";
+    private static final String ORG2 = "Org2MSP";
+
+    private final ContractRouter router;
+
+    private final Genson genson = new GensonBuilder().withConverters(new GpsPositionConverter()).create();
+
+    private final InMemoryChaincodeStub stub = new InMemoryChaincodeStub();
+
+    // Latency in nanoseconds of each transaction in the first and in the last round
+    private final Map<String, Long> firstRound = new LinkedHashMap<>();
+    private final Map<String, Long> lastRound = new LinkedHashMap<>();
+
+    private int rounds;
+
+    /**
+     * @param router a router whose contracts have been registered, i.e. one passed to
+     *               {@link ContractRouter#startRouterWithChaincodeServer}
+     */
+    public BasilWarmUp(final ContractRouter router) {
+        this.router = router;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0])
+                : Integer.parseInt(System.getenv().getOrDefault("BASIL_WARMUP_ROUNDS", "100"));
+
+        String[] routerArgs = System.getenv().containsKey("CORE_CHAINCODE_ID_NAME") ? new String[0]
+                : new String[]{"--id", "basil-warmup:0"};
+        ContractRouter router = new ContractRouter(routerArgs);
+
+        BasilWarmUp warmUp = new BasilWarmUp(router);
+        router.startRouterWithChaincodeServer(warmUp.before(null, rounds));
+        warmUp.printReport();
+    }
+
+    /**
+     * Returns a server that warms the router up with the given number of rounds and then
+     * starts the given server. The router registers its contracts before starting the
+     * server, so this is the earliest point transactions can be routed. A failing warm-up
+     * is reported but does not stop the server from starting.
+     *
+     * @param server the server to start afterwards, or null to only warm up
+     */
+    public ChaincodeServer before(final ChaincodeServer server, final int rounds) {
+        return new ChaincodeServer() {
+            @Override
+            public void start() throws IOException, InterruptedException {
+                try {
+                    run(rounds);
+                } catch (IllegalStateException e) {
+                    System.out.println("Warm-up failed: " + e.getMessage());
+                }
+                if (server != null) {
+                    server.start();
+                }
+            }
+
+            @Override
+            public void stop() {
+                if (server != null) {
+                    server.stop();
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs the given number of rounds.
+     *
+     * @throws IllegalStateException if a transaction fails
+     */
+    public void run(final int rounds) {
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            Map<String, Long> latencies = round == 0 ? firstRound : lastRound;
+            latencies.clear();
+            round(round, latencies);
+        }
+        this.rounds = rounds;
+        // the warm-up transactions are not the peer's
+        BasilMetrics.get().reset();
+        System.out.printf("Warm-up: %d rounds of %d transactions in %d ms%n", rounds, firstRound.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void round(final int round, final Map<String, Long> latencies) {
+        long ts = System.currentTimeMillis();
+        String qr = "warmup-" + round;
+        String qr1 = qr + "-1";
+        String qr2 = qr + "-2";
+
+        List<BasilLeg> batch = new ArrayList<>();
+        batch.add(leg(ts, qr1, 45.4642, 9.19));
+        batch.add(leg(ts, qr2, 45.4642, 9.19));
+        List<BasilLeg> moved = new ArrayList<>();
+        moved.add(leg(ts + 1, qr1, 45.4700, 9.20));
+        moved.add(leg(ts + 1, qr2, 45.4700, 9.20));
+
+        invoke(latencies, ORG1, "CreatePlant", genson.serialize(leg(ts, qr, 45.4642, 9.19)));
+        invoke(latencies, ORG1, "CreatePlants", genson.serialize(batch));
+        invoke(latencies, ORG1, "UpdatePlant", genson.serialize(leg(ts + 1, qr, 45.4700, 9.20)));
+        invoke(latencies, ORG1, "UpdatePlants", genson.serialize(moved));
+        invoke(latencies, ORG1, "RecordPosition", qr, "45.4710,9.2010", Long.toString(ts + 2));
+        invoke(latencies, ORG1, "GetTheStateOfPlant", qr);
+        invoke(latencies, ORG1, "CheckBasil", qr);
+        invoke(latencies, ORG1, "GetBasilByOwner", ORG1);
+        invoke(latencies, ORG1, "GetBasilByOwnerWithPagination", ORG1, "10", "");
+        invoke(latencies, ORG1, "HistoryPlant", qr);
+        invoke(latencies, ORG1, "HistoryPlantRange", qr, "0", Long.toString(Long.MAX_VALUE), "10");
+        invoke(latencies, ORG1, "GetPlantsInBoundingBox", "45", "9", "46", "10", "10", "");
+        invoke(latencies, ORG1, "ExportPlants", "", "", "10", "");
+        invoke(latencies, ORG1, "GetOwnerStats", ORG1);
+        invoke(latencies, ORG1, "RebuildOwnerIndex", "", "");
+        invoke(latencies, ORG1, "RebuildGeoIndex", "", "");
+        invoke(latencies, ORG1, "RebuildOwnerStats", ORG1);
+        invoke(latencies, ORG1, "TransferOwnership", qr, ORG2);
+        invoke(latencies, ORG1, "TransferOwnershipBatch", genson.serialize(new String[]{qr1, qr2}), ORG2);
+        invoke(latencies, ORG2, "DeletePlant", qr);
+        invoke(latencies, ORG2, "DeletePlant", qr1);
+        invoke(latencies, ORG2, "DeletePlant", qr2);
+    }
+
+    private static BasilLeg leg(final long ts, final String qr, final double latitude, final double longitude) {
+        return new BasilLeg(ts, new GpsPosition(latitude, longitude), new Basil(qr, "warm-up", ORG1));
+    }
+
+    private void invoke(final Map<String, Long> latencies, final String mspId, final String function,
+                        final String... args) {
+        stub.beginTransaction(mspId, function, args);
+        long start = System.nanoTime();
+        Chaincode.Response response = router.invoke(stub);
+        long elapsed = System.nanoTime() - start;
+
+        if (response.getStatus() != Chaincode.Response.Status.SUCCESS) {
+            stub.abortTransaction();
+            throw new IllegalStateException(function + " returned " + response.getStatus() + ": "
+                    + response.getMessage());
+        }
+        stub.commitTransaction();
+        // the first call of a transaction in the round, DeletePlant runs three times
+        latencies.putIfAbsent(function, elapsed);
+    }
+
+    /**
+     * Prints the latency of each transaction in the first and in the last round.
+     */
+    public void printReport() {
+        System.out.printf("%-32s %12s %12s%n", "Transaction", "first (us)", "last (us)");
+        long firstTotal = 0;
+        long lastTotal = 0;
+        for (Map.Entry<String, Long> first : firstRound.entrySet()) {
+            Long last = lastRound.get(first.getKey());
+            System.out.printf("%-32s %12d %12s%n", first.getKey(), TimeUnit.NANOSECONDS.toMicros(first.getValue()),
+                    last == null ? "-" : Long.toString(TimeUnit.NANOSECONDS.toMicros(last)));
+            firstTotal += first.getValue();
+            lastTotal += last == null ? 0 : last;
+        }
+        System.out.printf("%-32s %12d %12s%n", "Round total",
+                TimeUnit.NANOSECONDS.toMicros(firstTotal),
+                rounds > 1 ? Long.toString(TimeUnit.NANOSECONDS.toMicros(lastTotal)) : "-");
+    }
+}
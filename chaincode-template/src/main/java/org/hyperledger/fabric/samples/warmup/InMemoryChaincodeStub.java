@@ -0,0 +1,508 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.hyperledger.fabric.protos.msp.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * A single-process stand-in for the peer side of {@link ChaincodeStub}: world state, composite
+ * keys, range and partial-key queries with pagination, key history and events.
+ * <p>
+ * Like the peer, writes are buffered in the transaction's write set and are neither visible
+ * to its own reads nor to other transactions until {@link #commitTransaction()}. History is
+ * returned newest first, as on Fabric 2.x. CouchDB rich queries and private data are not
+ * supported. The stub is not thread-safe: drive one transaction at a time.
+ * <p>
+ * It ships in the chaincode jar only because {@link BasilWarmUp} runs the contract against
+ * it before the peer connects; nothing else in the chaincode uses it, and it never sees a
+ * real transaction. The operations the contract does not use throw
+ * UnsupportedOperationException, and the embedded certificate is a throwaway self-signed
+ * one that only gives the warm-up transactions a client identity.
+ */
+public final class InMemoryChaincodeStub implements ChaincodeStub {
+
+    // Self-signed client certificate; the MSP ID comes from the serialized identity, not from it.
+    private static final String CLIENT_CERT = "-----BEGIN CERTIFICATE-----\n"
+            + "MIICCzCCAbGgAwIBAgIUZO7P+0CHLFovOLbJho+kitJoIWYwCgYIKoZIzj0EAwIw\n"
+            + "WjELMAkGA1UEBhMCVVMxGTAXBgNVBAoMEG9yZzEuZXhhbXBsZS5jb20xDzANBgNV\n"
+            + "BAsMBmNsaWVudDEfMB0GA1UEAwwWVXNlcjFAb3JnMS5leGFtcGxlLmNvbTAgFw0y\n"
+            + "NjEwMTcyMDEyMDJaGA8yMTI2MDkyMzIwMTIwMlowWjELMAkGA1UEBhMCVVMxGTAX\n"
+            + "BgNVBAoMEG9yZzEuZXhhbXBsZS5jb20xDzANBgNVBAsMBmNsaWVudDEfMB0GA1UE\n"
+            + "AwwWVXNlcjFAb3JnMS5leGFtcGxlLmNvbTBZMBMGByqGSM49AgEGCCqGSM49AwEH\n"
+            + "A0IABG5W+Jy14FTx+TP7f0A3n+agEL1zw9BAr+O1uYj7bc/FqHJjK9AGxffy774t\n"
+            + "KMixpLf3JQw4q8hFQ2HWSXfUbhyjUzBRMB0GA1UdDgQWBBT7UUbbUyuzYB5LYMEV\n"
+            + "ghogShdltzAfBgNVHSMEGDAWgBT7UUbbUyuzYB5LYMEVghogShdltzAPBgNVHRMB\n"
+            + "Af8EBTADAQH/MAoGCCqGSM49BAMCA0gAMEUCIAKLel4CjtY6eaa2HALh4lYdiEs8\n"
+            + "2MH8fG2YbVe1eDSDAiEAs8tfnDEWnERef6k9RNMcmISwrYH4aluBrXJtOwzTd9I=\n"
+            + "-----END CERTIFICATE-----\n";
+
+    // Upper bound of a partial composite key range; the peer uses U+10FFFF on UTF-8 keys,
+    // the highest UTF-16 unit plays that role for the String ordering of the TreeMap
+    private static final String MAX_UNICODE_RUNE = String.valueOf(Character.MAX_VALUE);
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    private final NavigableMap<String, byte[]> state = new TreeMap<>();
+    private final Map<String, LinkedList<KeyModification>> history = new HashMap<>();
+    private final Map<String, byte[]> creators = new HashMap<>();
+
+    private final Map<String, byte[]> writeSet = new LinkedHashMap<>();
+    private long txCounter;
+    private String txId;
+    private Instant txTimestamp;
+    private String mspId;
+    private String function = "";
+    private List<String> parameters = Collections.emptyList();
+    private ChaincodeEvent event;
+
+    /**
+     * Starts a new transaction submitted by a client of the given MSP.
+     */
+    public InMemoryChaincodeStub beginTransaction(final String clientMspId, final String fcn, final String... params) {
+        writeSet.clear();
+        event = null;
+        txId = "tx" + (++txCounter);
+        txTimestamp = Instant.now();
+        mspId = clientMspId;
+        function = fcn;
+        parameters = List.of(params);
+        return this;
+    }
+
+    /**
+     * Applies the write set of the current transaction to the world state and history.
+     */
+    public void commitTransaction() {
+        for (Map.Entry<String, byte[]> write : writeSet.entrySet()) {
+            String key = write.getKey();
+            byte[] value = write.getValue();
+            boolean deleted = value.length == 0;
+
+            if (deleted) {
+                state.remove(key);
+            } else {
+                state.put(key, value);
+            }
+            if (!key.startsWith(CompositeKey.NAMESPACE)) {
+                history.computeIfAbsent(key, k -> new LinkedList<>())
+                        .addFirst(new Modification(txId, value, txTimestamp, deleted));
+            }
+        }
+        writeSet.clear();
+    }
+
+    /**
+     * Drops the write set of the current transaction, as the peer does for a failed one.
+     */
+    public void abortTransaction() {
+        writeSet.clear();
+        event = null;
+    }
+
+    public int size() {
+        return state.size();
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        List<byte[]> args = new ArrayList<>();
+        args.add(function.getBytes(StandardCharsets.UTF_8));
+        parameters.forEach(parameter -> args.add(parameter.getBytes(StandardCharsets.UTF_8)));
+        return args;
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        List<String> args = new ArrayList<>();
+        args.add(function);
+        args.addAll(parameters);
+        return args;
+    }
+
+    @Override
+    public String getFunction() {
+        return function;
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String getTxId() {
+        return txId;
+    }
+
+    @Override
+    public String getChannelId() {
+        return "mychannel";
+    }
+
+    @Override
+    public Chaincode.Response invokeChaincode(final String chaincodeName, final List<byte[]> args, final String channel) {
+        throw new UnsupportedOperationException("invokeChaincode");
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        return state.get(key);
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        return null;
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("key must not be null or empty");
+        }
+        writeSet.put(key, value == null ? new byte[0] : value);
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        throw new UnsupportedOperationException("setStateValidationParameter");
+    }
+
+    @Override
+    public void delState(final String key) {
+        writeSet.put(key, new byte[0]);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        CompositeKey.validateSimpleKeys(startKey, endKey);
+        return new Results<>(simpleRange(startKey, endKey).entrySet().stream()
+                .map(entry -> (KeyValue) new Entry(entry.getKey(), entry.getValue()))
+                .iterator(), null);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey,
+                                                                                    final String endKey,
+                                                                                    final int pageSize,
+                                                                                    final String bookmark) {
+        CompositeKey.validateSimpleKeys(startKey, endKey);
+        String from = bookmark == null || bookmark.isEmpty() ? startKey : bookmark;
+        return page(simpleRange(from, endKey), pageSize);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        return getStateByPartialCompositeKey(CompositeKey.parseCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType,
+                                                                        final String... attributes) {
+        return getStateByPartialCompositeKey(new CompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        String prefix = compositeKey.toString();
+        return new Results<>(state.subMap(prefix, true, prefix + MAX_UNICODE_RUNE, false).entrySet().stream()
+                .map(entry -> (KeyValue) new Entry(entry.getKey(), entry.getValue()))
+                .iterator(), null);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(
+            final CompositeKey compositeKey, final int pageSize, final String bookmark) {
+        String prefix = compositeKey.toString();
+        String from = bookmark == null || bookmark.isEmpty() ? prefix : bookmark;
+        return page(state.subMap(from, true, prefix + MAX_UNICODE_RUNE, false), pageSize);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return new CompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return CompositeKey.parseCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        throw new UnsupportedOperationException("CouchDB rich queries are not supported in memory");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query,
+                                                                                   final int pageSize,
+                                                                                   final String bookmark) {
+        throw new UnsupportedOperationException("CouchDB rich queries are not supported in memory");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        List<KeyModification> modifications = history.getOrDefault(key, new LinkedList<>());
+        return new Results<>(modifications.iterator(), null);
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey,
+                                                                final String endKey) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+                                                                              final String compositeKey) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+                                                                              final CompositeKey compositeKey) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+                                                                              final String objectType,
+                                                                              final String... attributes) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        throw new UnsupportedOperationException("private data");
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        event = ChaincodeEvent.newBuilder()
+                .setTxId(txId)
+                .setEventName(name)
+                .setPayload(ByteString.copyFrom(payload))
+                .build();
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        throw new UnsupportedOperationException("getSignedProposal");
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return txTimestamp;
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return creators.computeIfAbsent(mspId, id -> SerializedIdentity.newBuilder()
+                .setMspid(id)
+                .setIdBytes(ByteString.copyFromUtf8(CLIENT_CERT))
+                .build()
+                .toByteArray());
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        throw new UnsupportedOperationException("getBinding");
+    }
+
+    @Override
+    public String getMspId() {
+        return mspId;
+    }
+
+    private NavigableMap<String, byte[]> simpleRange(final String startKey, final String endKey) {
+        // composite keys live below every simple key, in the \u0000 namespace
+        String from = startKey == null || startKey.isEmpty() ? "\u0001" : startKey;
+        if (endKey == null || endKey.isEmpty()) {
+            return state.tailMap(from, true);
+        }
+        return state.subMap(from, true, endKey, false);
+    }
+
+    private static QueryResultsIteratorWithMetadata<KeyValue> page(final NavigableMap<String, byte[]> range,
+                                                                  final int pageSize) {
+        int limit = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+        List<KeyValue> records = range.entrySet().stream()
+                .limit(limit + 1L)
+                .map(entry -> new Entry(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+
+        // the bookmark is the first key of the next page, as with LevelDB
+        String bookmark = "";
+        if (records.size() > limit) {
+            bookmark = records.remove(limit).getKey();
+        }
+        QueryResponseMetadata metadata = QueryResponseMetadata.newBuilder()
+                .setBookmark(bookmark)
+                .setFetchedRecordsCount(records.size())
+                .build();
+        return new Results<>(records.iterator(), metadata);
+    }
+
+    private static final class Results<T> implements QueryResultsIterator<T>, QueryResultsIteratorWithMetadata<T> {
+
+        private final Iterator<T> iterator;
+        private final QueryResponseMetadata metadata;
+
+        Results(final Iterator<T> iterator, final QueryResponseMetadata metadata) {
+            this.iterator = iterator;
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return iterator;
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class Entry implements KeyValue {
+
+        private final String key;
+        private final byte[] value;
+
+        Entry(final String key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Modification implements KeyModification {
+
+        private final String txId;
+        private final byte[] value;
+        private final Instant timestamp;
+        private final boolean deleted;
+
+        Modification(final String txId, final byte[] value, final Instant timestamp, final boolean deleted) {
+            this.txId = txId;
+            this.value = value;
+            this.timestamp = timestamp;
+            this.deleted = deleted;
+        }
+
+        @Override
+        public String getTxId() {
+            return txId;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public boolean isDeleted() {
+            return deleted;
+        }
+    }
+}